@@ -0,0 +1,204 @@
+package bench;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import game.Player;
+import pieces.Piece;
+import rules.Bitboards;
+import rules.Fen;
+import rules.MoveGenerator;
+import rules.Perft;
+import rules.Position;
+
+/**
+ * The RulesBenchmark class times the move rules: perft, the move generator, Player.checkMove,
+ * Player.kingInCheck and the isLegal method of each piece, the attack maps against scanning for
+ * attackers, and reading and writing FEN.  Every case is warmed up first so
+ * the JIT compiler has finished with it, then measured over several fixed-length iterations.
+ * For each case it prints the time per operation, operations per second and the bytes
+ * allocated per operation, as measured by the JVM's per-thread allocation counter.
+ *
+ * Usage: java bench.RulesBenchmark [seconds per iteration] [case name filter]
+ */
+public class RulesBenchmark {
+
+	/**
+	 * One thing to time.  run() performs a single operation and returns a value that is
+	 * summed into a sink so the JIT compiler cannot remove the work.
+	 */
+	interface Case {
+		long run();
+	}
+
+	/**
+	 * How many warm-up and measured iterations each case gets.
+	 */
+	private static final int WARMUP_ITERATIONS = 3, MEASURED_ITERATIONS = 5;
+
+	/**
+	 * Results of every operation are added here.
+	 */
+	private static volatile long sink;
+
+	/**
+	 * The JVM's thread bean, which can report the bytes allocated by a thread on HotSpot.
+	 */
+	private static final com.sun.management.ThreadMXBean THREADS =
+			(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+	/**
+	 * Runs every case whose name contains the filter.
+	 */
+	public static void main(String[] args){
+		double seconds = args.length > 0 ? Double.parseDouble(args[0]) : 1.0;
+		String filter = args.length > 1 ? args[1] : "";
+
+		System.out.printf("%-28s %14s %16s %14s%n", "Benchmark", "ns/op", "ops/s", "bytes/op");
+
+		// Perft and the move generator
+		final Position start = new Position();
+		Fen.parse(Fen.START, start);
+		final Position middleGame = new Position();
+		Fen.parse("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1", middleGame);
+		final Perft perft = new Perft(4);
+		final int[] buffer = new int[MoveGenerator.MAX_MOVES];
+
+		long nodes = perft.perft(start, 4);
+		double perftNs = measure("perft(start, 4)", filter, seconds, new Case(){
+			public long run(){ return perft.perft(start, 4); }
+		});
+		if(perftNs > 0)
+			System.out.printf("%-28s %14s %16.0f%n", "  perft nodes/s", "", nodes * 1e9 / perftNs);
+
+		measure("MoveGenerator.start", filter, seconds, new Case(){
+			public long run(){ return MoveGenerator.generate(start, buffer, 0); }
+		});
+		measure("MoveGenerator.middleGame", filter, seconds, new Case(){
+			public long run(){ return MoveGenerator.generate(middleGame, buffer, 0); }
+		});
+
+		// Attacked squares from the attack maps and by scanning for attackers
+		measure("Position.isAttacked", filter, seconds, new Case(){
+			private int square;
+			public long run(){
+				square = (square + 1) & 63;
+				return middleGame.isAttacked(square, Position.BLACK) ? 1 : 0;
+			}
+		});
+		measure("Position.isAttackedByScan", filter, seconds, new Case(){
+			private int square;
+			public long run(){
+				square = (square + 1) & 63;
+				return middleGame.isAttackedByScan(square, Position.BLACK) ? 1 : 0;
+			}
+		});
+		measure("Position.isInCheck", filter, seconds, new Case(){
+			public long run(){ return middleGame.isInCheck(Position.WHITE) ? 1 : 0; }
+		});
+		measure("Position.isInCheckByScan", filter, seconds, new Case(){
+			public long run(){
+				return middleGame.isAttackedByScan(middleGame.getKingSquare(Position.WHITE), Position.BLACK) ? 1 : 0;
+			}
+		});
+
+		// FEN, read from bytes as when loading a file of positions
+		final ByteBuffer fenBytes = ByteBuffer.wrap(Fen.toString(middleGame).getBytes(StandardCharsets.US_ASCII));
+		final Position parsed = new Position();
+		final StringBuilder written = new StringBuilder(128);
+		measure("Fen.parse", filter, seconds, new Case(){
+			public long run(){
+				fenBytes.rewind();
+				Fen.parse(fenBytes, parsed);
+				return parsed.getKey();
+			}
+		});
+		measure("Fen.write", filter, seconds, new Case(){
+			public long run(){
+				written.setLength(0);
+				Fen.write(middleGame, written);
+				return written.length();
+			}
+		});
+
+		// The Player methods, on the starting position
+		final Position position = new Position();
+		final Player white = new Player(true, position);
+		final Player black = new Player(false, position);
+
+		measure("Player.checkMove", filter, seconds, new Case(){
+			public long run(){
+				// Both king's knights go out and back, then the 4 moves are taken off the
+				// undo stack so the position is unchanged; one operation is all 4 moves
+				int moved = (white.checkMove(3, 3, 2, 1) ? 1 : 0) + (black.checkMove(3, 6, 2, 8) ? 1 : 0)
+						+ (white.checkMove(2, 1, 3, 3) ? 1 : 0) + (black.checkMove(2, 8, 3, 6) ? 1 : 0);
+				for(int i=0; i<moved; i++)
+					position.unmakeMove();
+				return moved;
+			}
+		});
+		measure("Player.kingInCheck", filter, seconds, new Case(){
+			public long run(){ return white.kingInCheck() ? 1 : 0; }
+		});
+
+		// isLegal of each piece type, asked about every square of the board
+		Piece[] pieces = white.getPieces();
+		measureIsLegal("Rook.isLegal", filter, seconds, pieces[0], position);
+		measureIsLegal("Pawn.isLegal", filter, seconds, pieces[5], position);
+		measureIsLegal("Knight.isLegal", filter, seconds, pieces[10], position);
+		measureIsLegal("Bishop.isLegal", filter, seconds, pieces[12], position);
+		measureIsLegal("Queen.isLegal", filter, seconds, pieces[14], position);
+		measureIsLegal("King.isLegal", filter, seconds, pieces[15], position);
+	}
+
+	/**
+	 * Times one piece's isLegal over all 64 target squares; one operation is one target.
+	 */
+	private static void measureIsLegal(String name, String filter, double seconds,
+			final Piece piece, final Position position){
+		measure(name, filter, seconds, new Case(){
+			private int square;
+			public long run(){
+				square = (square + 1) & 63;
+				return piece.isLegal(Bitboards.xOf(square), Bitboards.yOf(square), position) ? 1 : 0;
+			}
+		});
+	}
+
+	/**
+	 * Warms up and measures a case and prints its line.  Returns the nanoseconds per
+	 * operation, or 0 if the case was skipped by the filter.
+	 */
+	private static double measure(String name, String filter, double seconds, Case benchmark){
+		if(!name.contains(filter))
+			return 0;
+
+		long threadId = Thread.currentThread().getId();
+		long budget = (long) (seconds * 1e9);
+		double nsPerOp = 0, bytesPerOp = 0;
+
+		for(int iteration=0; iteration < WARMUP_ITERATIONS + MEASURED_ITERATIONS; iteration++){
+			long operations = 0, sum = 0;
+			long bytesBefore = THREADS.getThreadAllocatedBytes(threadId);
+			long begin = System.nanoTime(), elapsed;
+			do{
+				for(int i=0; i<64; i++)
+					sum += benchmark.run();
+				operations += 64;
+				elapsed = System.nanoTime() - begin;
+			}while(elapsed < budget);
+			long bytes = THREADS.getThreadAllocatedBytes(threadId) - bytesBefore;
+			sink += sum;
+
+			if(iteration >= WARMUP_ITERATIONS){
+				nsPerOp += (double) elapsed / operations / MEASURED_ITERATIONS;
+				bytesPerOp += (double) bytes / operations / MEASURED_ITERATIONS;
+			}
+		}
+
+		System.out.printf("%-28s %14.1f %16.0f %14.2f%n", name, nsPerOp, 1e9 / nsPerOp, bytesPerOp);
+		return nsPerOp;
+	}
+
+}  // End RulesBenchmark
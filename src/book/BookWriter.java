@@ -0,0 +1,177 @@
+package book;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import rules.Fen;
+import rules.Move;
+import rules.MoveGenerator;
+import rules.Position;
+
+/**
+ * The BookWriter class builds an opening book for OpeningBook.  Moves are added with the
+ * position they were played in; the same move added again in the same position adds to its
+ * weight.  write() sorts the entries by key and writes them in the Polyglot ".bin" layout,
+ * after the header entry OpeningBook checks for, since the keys are not Polyglot's.
+ *
+ * The main method builds a book from a text file of games, one per line, each written as
+ * moves in coordinate notation separated by spaces, as MoveList.toString() writes them:
+ * java book.BookWriter book.bin games.txt [plies]
+ */
+public class BookWriter {
+
+	/**
+	 * The largest weight a Polyglot entry can hold.
+	 */
+	private static final int MAX_WEIGHT = 0xFFFF;
+
+	/**
+	 * The keys and Polyglot moves of every move added, of which the first size are in use.
+	 */
+	private long[] keys = new long[1024];
+	private int[] moves = new int[1024];
+	private int size;
+
+	/**
+	 * Adds a move played in the position.
+	 */
+	public void add(Position position, int move){
+		if(size == keys.length){
+			keys = Arrays.copyOf(keys, size * 2);
+			moves = Arrays.copyOf(moves, size * 2);
+		}
+		keys[size] = position.getKey();
+		moves[size++] = OpeningBook.toPolyglot(move);
+	}
+
+	/**
+	 * Writes the book and returns its number of entries, not counting the header.  Each
+	 * entry's weight is the number of times its move was added, up to MAX_WEIGHT.
+	 */
+	public long write(Path file) throws IOException{
+		sort(0, size - 1);
+		long entries = 0;
+		ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)){
+			// Key 0 sorts first, and its move from a1 to a1 matches no legal move
+			buffer.putLong(0).putShort((short) 0).putShort((short) 0).putInt(OpeningBook.MAGIC);
+			for(int i=0; i<size; ){
+				int j = i + 1;
+				while(j < size && keys[j] == keys[i] && moves[j] == moves[i])
+					j++;
+				if(buffer.remaining() < OpeningBook.ENTRY_SIZE)
+					drain(buffer, channel);
+				buffer.putLong(keys[i]).putShort((short) moves[i]).putShort((short) Math.min(j - i, MAX_WEIGHT)).putInt(0);
+				entries++;
+				i = j;
+			}
+			drain(buffer, channel);
+		}
+		return entries;
+	}
+
+	/**
+	 * Writes out the buffer and empties it.
+	 */
+	private static void drain(ByteBuffer buffer, FileChannel channel) throws IOException{
+		buffer.flip();
+		while(buffer.hasRemaining())
+			channel.write(buffer);
+		buffer.clear();
+	}
+
+	/**
+	 * Sorts entries low to high by unsigned key, then by move.
+	 */
+	private void sort(int low, int high){
+		while(low < high){
+			int i = low, j = high, pivot = (low + high) >>> 1;
+			long pivotKey = keys[pivot];
+			int pivotMove = moves[pivot];
+			while(i <= j){
+				while(compare(i, pivotKey, pivotMove) < 0)
+					i++;
+				while(compare(j, pivotKey, pivotMove) > 0)
+					j--;
+				if(i <= j)
+					swap(i++, j--);
+			}
+			// Recurse into the smaller half so the stack stays shallow
+			if(j - low < high - i){
+				sort(low, j);
+				low = i;
+			}
+			else{
+				sort(i, high);
+				high = j;
+			}
+		}
+	}
+
+	/**
+	 * Compares entry i with a key and move.
+	 */
+	private int compare(int i, long key, int move){
+		int byKey = Long.compareUnsigned(keys[i], key);
+		return byKey != 0 ? byKey : Integer.compare(moves[i], move);
+	}
+
+	/**
+	 * Swaps entries i and j.
+	 */
+	private void swap(int i, int j){
+		long key = keys[i];
+		keys[i] = keys[j];
+		keys[j] = key;
+		int move = moves[i];
+		moves[i] = moves[j];
+		moves[j] = move;
+	}
+
+	/**
+	 * Builds a book from the first plies moves of each game in a text file.
+	 */
+	public static void main(String[] args) throws IOException{
+		if(args.length < 2){
+			System.err.println("Usage: java book.BookWriter book.bin games.txt [plies]");
+			System.exit(2);
+		}
+		int plies = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+		BookWriter writer = new BookWriter();
+		Position position = new Position();
+		int[] buffer = new int[MoveGenerator.MAX_MOVES];
+		long games = 0;
+		try(BufferedReader in = Files.newBufferedReader(Paths.get(args[1]), StandardCharsets.US_ASCII)){
+			for(String line = in.readLine(); line != null; line = in.readLine()){
+				Fen.parse(Fen.START, position);
+				int ply = 0;
+				for(int start = 0; start < line.length() && ply < plies; ply++){
+					while(start < line.length() && line.charAt(start) == ' ')
+						start++;
+					int end = start;
+					while(end < line.length() && line.charAt(end) != ' ')
+						end++;
+					int move = Move.parse(line, start, end, position, buffer);
+					if(move == Move.NONE)
+						break;
+					writer.add(position, move);
+					position.makeMove(move);
+					start = end;
+				}
+				games++;
+			}
+		}
+		long entries = writer.write(Paths.get(args[0]));
+		System.out.printf("%d games, %d moves, %d entries%n", games, writer.size, entries);
+	}
+
+}  // End BookWriter
@@ -0,0 +1,220 @@
+package book;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import rules.Fen;
+import rules.Move;
+import rules.MoveGenerator;
+import rules.Position;
+
+/**
+ * The OpeningBook class looks positions up in a book file written by BookWriter.  The file
+ * is laid out like a Polyglot ".bin" book: a sorted array of 16-byte big-endian entries, each
+ * a 64-bit position key, a 16-bit move, a 16-bit weight and 32 bits of learning data which
+ * are ignored.  The file is memory-mapped and binary searched where it lies, so opening even
+ * a book of several gigabytes reads nothing into the heap, and a lookup touches only the 20
+ * to 30 entries on its search path.
+ *
+ * The keys are this project's Zobrist keys, not the Polyglot ones, so a book made by other
+ * Polyglot tools cannot be read: its positions would never be found.  BookWriter therefore
+ * starts every book with a header entry of key 0 and MAGIC as its learning data, and a file
+ * without it is refused when opened.  Moves use the Polyglot encoding, in which castling is
+ * written as the king taking its own rook.
+ *
+ * A book can be shared by any number of threads, since lookups only read the mapping.
+ *
+ * java book.OpeningBook book.bin [fen]
+ */
+public class OpeningBook implements Closeable {
+
+	/**
+	 * The size of an entry, and how many entries each mapped segment holds.  A mapping can
+	 * be at most 2 GB, so a larger book is mapped in segments of 1 GB.
+	 */
+	static final int ENTRY_SIZE = 16;
+	private static final int SEGMENT_SHIFT = 26, SEGMENT_ENTRIES = 1 << SEGMENT_SHIFT;
+
+	/**
+	 * The learning data of the header entry which marks a book written by BookWriter.
+	 */
+	static final int MAGIC = 0x5A4F4252;
+
+	/**
+	 * The mapped file and its number of entries, the header included.
+	 */
+	private final FileChannel channel;
+	private final MappedByteBuffer[] segments;
+	private final long entries;
+
+	/**
+	 * The constructor maps the book file.  It throws an IOException if the file does not
+	 * start with BookWriter's header, as a book with Polyglot keys would.
+	 */
+	public OpeningBook(Path file) throws IOException{
+		channel = FileChannel.open(file, StandardOpenOption.READ);
+		entries = channel.size() / ENTRY_SIZE;
+		segments = new MappedByteBuffer[(int) ((entries + SEGMENT_ENTRIES - 1) >>> SEGMENT_SHIFT)];
+		for(int i=0; i<segments.length; i++){
+			long start = (long) i << SEGMENT_SHIFT;
+			long count = Math.min(SEGMENT_ENTRIES, entries - start);
+			segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start * ENTRY_SIZE, count * ENTRY_SIZE);
+		}
+		if(entries == 0 || keyAt(0) != 0 || segments[0].getInt(12) != MAGIC){
+			channel.close();
+			throw new IOException(file + " was not written by BookWriter, Polyglot books use other keys");
+		}
+	}
+
+	/**
+	 * Writes the book moves of the position into moves and their weights into weights, and
+	 * returns how many there are.  Moves in the book which are not legal in the position are
+	 * left out.  The moves array must hold MoveGenerator.MAX_MOVES moves, as the legal moves
+	 * are generated into it first; nothing is allocated.
+	 */
+	public int probe(Position position, int[] moves, int[] weights){
+		long key = position.getKey();
+		long entry = firstEntry(key);
+		if(entry == entries)
+			return 0;
+
+		int count = MoveGenerator.generate(position, moves, 0), found = 0;
+		for(; entry < entries && keyAt(entry) == key; entry++){
+			int bookMove = moveAt(entry);
+			// The matching legal move is swapped to the front, so found moves are not looked at again
+			for(int i=found; i<count; i++){
+				if(toPolyglot(moves[i]) == bookMove){
+					int move = moves[i];
+					moves[i] = moves[found];
+					moves[found] = move;
+					weights[found++] = weightAt(entry);
+					break;
+				}
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Returns one of the book moves of the position, picked at random in proportion to the
+	 * weights, or Move.NONE if the position is not in the book.  The buffers are as for
+	 * probe().
+	 */
+	public int pick(Position position, int[] moves, int[] weights, Random random){
+		int count = probe(position, moves, weights);
+		long total = 0;
+		for(int i=0; i<count; i++)
+			total += weights[i];
+		if(count == 0)
+			return Move.NONE;
+		if(total == 0)
+			return moves[random.nextInt(count)];
+		long choice = (long) (random.nextDouble() * total);
+		for(int i=0; i<count; i++){
+			choice -= weights[i];
+			if(choice < 0)
+				return moves[i];
+		}
+		return moves[count - 1];
+	}
+
+	/**
+	 * Returns the index of the first entry with the key, or the number of entries if there
+	 * is none.  Keys are compared as unsigned numbers, the order the file is sorted in.
+	 */
+	private long firstEntry(long key){
+		long low = 0, high = entries;
+		while(low < high){
+			long middle = (low + high) >>> 1;
+			if(Long.compareUnsigned(keyAt(middle), key) < 0)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		return low < entries && keyAt(low) == key ? low : entries;
+	}
+
+	/**
+	 * Returns the key, move and weight of an entry.
+	 */
+	private long keyAt(long entry){
+		return segments[(int) (entry >>> SEGMENT_SHIFT)].getLong((int) (entry & (SEGMENT_ENTRIES - 1)) * ENTRY_SIZE);
+	}
+
+	private int moveAt(long entry){
+		return segments[(int) (entry >>> SEGMENT_SHIFT)].getShort((int) (entry & (SEGMENT_ENTRIES - 1)) * ENTRY_SIZE + 8) & 0xFFFF;
+	}
+
+	private int weightAt(long entry){
+		return segments[(int) (entry >>> SEGMENT_SHIFT)].getShort((int) (entry & (SEGMENT_ENTRIES - 1)) * ENTRY_SIZE + 10) & 0xFFFF;
+	}
+
+	/**
+	 * Returns a move in the Polyglot encoding: the square moved to in bits 0-5, the square
+	 * moved from in bits 6-11 and the promotion piece, 1 for a knight to 4 for a queen, in
+	 * bits 12-14.  The squares are numbered from a1 = 0 as in Position, and the promotion
+	 * pieces are the Position piece types, so only castling needs changing.
+	 */
+	static int toPolyglot(int move){
+		int from = Move.from(move), to = Move.to(move);
+		if(Move.flags(move) == Move.KING_CASTLE)
+			to = from + 3;
+		else if(Move.flags(move) == Move.QUEEN_CASTLE)
+			to = from - 4;
+		return to | (from << 6) | (Move.isPromotion(move) ? Move.promotionType(move) << 12 : 0);
+	}
+
+	/**
+	 * Returns the number of entries in the book, not counting the header.
+	 */
+	public long size(){
+		return entries - 1;
+	}
+
+	/**
+	 * Closes the file.  The mapping itself is released when it is garbage collected.
+	 */
+	public void close() throws IOException{
+		channel.close();
+	}
+
+	/**
+	 * Prints the book moves of the starting position, or of the FEN given after the file,
+	 * and how long a lookup takes.
+	 */
+	public static void main(String[] args) throws IOException{
+		if(args.length == 0){
+			System.err.println("Usage: java book.OpeningBook book.bin [fen]");
+			System.exit(2);
+		}
+		StringBuilder fen = new StringBuilder();
+		for(int i=1; i<args.length; i++)
+			fen.append(args[i]).append(' ');
+		Position position = new Position();
+		Fen.parse(fen.length() > 0 ? fen : Fen.START, position);
+
+		try(OpeningBook book = new OpeningBook(Paths.get(args[0]))){
+			int[] moves = new int[MoveGenerator.MAX_MOVES], weights = new int[MoveGenerator.MAX_MOVES];
+			int count = book.probe(position, moves, weights);
+			System.out.printf("%d entries, %d book moves%n", book.size(), count);
+			for(int i=0; i<count; i++)
+				System.out.printf("%-6s %d%n", Move.toString(moves[i]), weights[i]);
+
+			long sink = 0;
+			for(int i=0; i<100000; i++)
+				sink += book.probe(position, moves, weights);
+			long start = System.nanoTime();
+			int lookups = 1000000;
+			for(int i=0; i<lookups; i++)
+				sink += book.probe(position, moves, weights);
+			System.out.printf("%.0f ns per lookup (%d)%n", (System.nanoTime() - start) / (double) lookups, sink & 1);
+		}
+	}
+
+}  // End OpeningBook
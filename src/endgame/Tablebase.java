@@ -0,0 +1,285 @@
+package endgame;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import rules.Position;
+
+/**
+ * The Tablebase class holds the perfect result of every position of one endgame, such as
+ * KQK or KBNK, in a memory-mapped file of one byte per position.  A byte of 0 is a draw, 255
+ * marks an impossible position and any other value v means the side to move wins (v - 1 odd)
+ * or loses (v - 1 even) with best play, mate coming after v - 1 plies.  The endgame is named by
+ * the white pieces and then the black pieces, each starting with the king, so "KQKR" is king
+ * and queen against king and rook.  Castling and en passant are not part of a table.
+ *
+ * A position's index is its side to move followed by the square of each piece, 6 bits each, in
+ * the order of the name: index = side << 6n | square of piece n-1 << 6(n-1) | ... | square of
+ * piece 0.  When a side has two pieces of the same kind the lower square comes first, and the
+ * other order is marked impossible.  Tables are written by TablebaseGenerator and read
+ * through Tablebases, which also looks positions up with the colors swapped.
+ */
+public class Tablebase implements Closeable {
+
+	/**
+	 * The byte of a drawn position and of an impossible one.
+	 */
+	public static final int DRAW = 0, INVALID = 255;
+
+	/**
+	 * The most plies to mate a table can store, and the most pieces a table can have.
+	 */
+	public static final int MAX_PLIES = 253, MAX_PIECES = 4;
+
+	/**
+	 * The file name ending of a table.
+	 */
+	public static final String EXTENSION = ".tb";
+
+	/**
+	 * The piece letters in Position piece type order.
+	 */
+	private static final String PIECE_LETTERS = "PNBRQK";
+
+	/**
+	 * The name, and the color and type of each piece in the order of the name.
+	 */
+	private final String name;
+	final int pieces;
+	final int[] colors, types;
+
+	/**
+	 * True for each piece which is followed in the name by another of the same color and type.
+	 */
+	final boolean[] sameAsNext;
+
+	/**
+	 * The counts of the pieces other than the kings packed into an int, for this table and
+	 * for the same endgame with the colors swapped.
+	 */
+	final int materialKey, mirroredKey;
+
+	/**
+	 * The file and its mapping.
+	 */
+	private final FileChannel channel;
+	private final MappedByteBuffer values;
+
+	/**
+	 * The constructor reads the layout from the name and maps the file.
+	 */
+	private Tablebase(String name, FileChannel channel, FileChannel.MapMode mode) throws IOException{
+		this.name = name;
+		pieces = name.length();
+		colors = new int[pieces];
+		types = new int[pieces];
+		sameAsNext = new boolean[pieces];
+		parse(name, colors, types);
+		for(int i=0; i+1<pieces; i++)
+			sameAsNext[i] = colors[i] == colors[i + 1] && types[i] == types[i + 1];
+		materialKey = materialKey(colors, types, false);
+		mirroredKey = materialKey(colors, types, true);
+		this.channel = channel;
+		values = channel.map(mode, 0, size());
+	}
+
+	/**
+	 * Opens the table in the file for reading.  The table's name is the file's name.
+	 */
+	public static Tablebase open(Path file) throws IOException{
+		String fileName = file.getFileName().toString();
+		String name = fileName.endsWith(EXTENSION) ? fileName.substring(0, fileName.length() - EXTENSION.length()) : fileName;
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+		if(channel.size() != size(name)){
+			channel.close();
+			throw new IOException(file + " is not a table of " + name);
+		}
+		return new Tablebase(name, channel, FileChannel.MapMode.READ_ONLY);
+	}
+
+	/**
+	 * Creates the file of an empty table with the given name, for the generator to fill.
+	 */
+	static Tablebase create(Path file, String name) throws IOException{
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		return new Tablebase(name, channel, FileChannel.MapMode.READ_WRITE);
+	}
+
+	/**
+	 * Returns the number of positions of the table with the given name.
+	 */
+	static long size(String name){
+		return 2L << (6 * name.length());
+	}
+
+	/**
+	 * Returns the number of positions of this table.
+	 */
+	public long size(){
+		return size(name);
+	}
+
+	/**
+	 * Returns the byte of the position, which must have this table's pieces, or with mirrored
+	 * set the pieces with the colors swapped, in which case the board is turned over too.
+	 */
+	public int probe(Position position, boolean mirrored){
+		return get(index(position, mirrored));
+	}
+
+	/**
+	 * Returns the index of the position, as probe() takes it.
+	 */
+	long index(Position position, boolean mirrored){
+		long index = mirrored ? 1 - position.getSideToMove() : position.getSideToMove();
+		int flip = mirrored ? 56 : 0;
+		for(int i=pieces - 1; i>=0; i--){
+			long bitboard = position.getPieces(mirrored ? 1 - colors[i] : colors[i], types[i]);
+			int square;
+			// Of two pieces of the same kind the later one in the name takes the higher square
+			if(sameAsNext[i]){
+				int other = Long.numberOfTrailingZeros(bitboard ^ Long.lowestOneBit(bitboard)) ^ flip;
+				square = Math.min(Long.numberOfTrailingZeros(bitboard) ^ flip, other);
+			}
+			else if(i > 0 && sameAsNext[i - 1]){
+				int other = Long.numberOfTrailingZeros(bitboard ^ Long.lowestOneBit(bitboard)) ^ flip;
+				square = Math.max(Long.numberOfTrailingZeros(bitboard) ^ flip, other);
+			}
+			else
+				square = Long.numberOfTrailingZeros(bitboard) ^ flip;
+			index = (index << 6) | square;
+		}
+		return index;
+	}
+
+	/**
+	 * Returns and sets the byte at an index.
+	 */
+	int get(long index){
+		return values.get((int) index) & 0xFF;
+	}
+
+	void set(long index, int value){
+		values.put((int) index, (byte) value);
+	}
+
+	/**
+	 * Writes the table out to its file.
+	 */
+	void force(){
+		values.force();
+	}
+
+	/**
+	 * Returns the name of the table, such as "KQK".
+	 */
+	public String getName(){
+		return name;
+	}
+
+	/**
+	 * Returns the number of pieces, kings included.
+	 */
+	public int getPieces(){
+		return pieces;
+	}
+
+	/**
+	 * Returns true if a table byte is a win for the side to move.
+	 */
+	public static boolean isWin(int value){
+		return value != DRAW && value != INVALID && ((value - 1) & 1) == 1;
+	}
+
+	/**
+	 * Returns true if a table byte is a loss for the side to move.
+	 */
+	public static boolean isLoss(int value){
+		return value != DRAW && value != INVALID && ((value - 1) & 1) == 0;
+	}
+
+	/**
+	 * Returns the plies to mate of a win or a loss.
+	 */
+	public static int plies(int value){
+		return value - 1;
+	}
+
+	/**
+	 * Returns the byte of a win or loss with mate after the given plies: odd for a win, even
+	 * for a loss.
+	 */
+	static int encode(int plies){
+		return plies + 1;
+	}
+
+	/**
+	 * Fills the colors and types from an endgame name, throwing an IllegalArgumentException
+	 * if it is not one of at most MAX_PIECES pieces with one king per side.
+	 */
+	static void parse(String name, int[] colors, int[] types){
+		int color = -1;
+		for(int i=0; i<name.length(); i++){
+			int type = PIECE_LETTERS.indexOf(name.charAt(i));
+			if(type < 0 || (i == 0 && type != Position.KING))
+				throw new IllegalArgumentException("Bad endgame name: " + name);
+			if(type == Position.KING)
+				color++;
+			colors[i] = color;
+			types[i] = type;
+		}
+		if(color != Position.BLACK || name.length() > MAX_PIECES)
+			throw new IllegalArgumentException("Bad endgame name: " + name);
+	}
+
+	/**
+	 * Returns the counts of the pieces other than the kings, two bits each, optionally with the
+	 * colors swapped.
+	 */
+	static int materialKey(int[] colors, int[] types, boolean mirrored){
+		int key = 0;
+		for(int i=0; i<colors.length; i++)
+			if(types[i] != Position.KING)
+				key += 1 << (2 * ((mirrored ? 1 - colors[i] : colors[i]) * 5 + types[i]));
+		return key;
+	}
+
+	/**
+	 * Returns the material key of a position, as materialKey() above.
+	 */
+	static int materialKey(Position position){
+		int key = 0;
+		for(int color=Position.WHITE; color<=Position.BLACK; color++)
+			for(int type=Position.PAWN; type<Position.KING; type++)
+				key += Long.bitCount(position.getPieces(color, type)) << (2 * (color * 5 + type));
+		return key;
+	}
+
+	/**
+	 * Returns the endgame name of the piece counts, which are indexed by color and type, with
+	 * the pieces of each side from the queen down to the pawns.
+	 */
+	static String name(int[][] counts){
+		StringBuilder name = new StringBuilder(MAX_PIECES);
+		for(int color=Position.WHITE; color<=Position.BLACK; color++){
+			name.append('K');
+			for(int type=Position.QUEEN; type>=Position.PAWN; type--)
+				for(int i=0; i<counts[color][type]; i++)
+					name.append(PIECE_LETTERS.charAt(type));
+		}
+		return name.toString();
+	}
+
+	/**
+	 * Closes the file.  The mapping itself is released when it is garbage collected.
+	 */
+	public void close() throws IOException{
+		channel.close();
+	}
+
+}  // End Tablebase
@@ -0,0 +1,477 @@
+package endgame;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import rules.Attacks;
+import rules.Move;
+import rules.MoveGenerator;
+import rules.Position;
+
+/**
+ * The TablebaseGenerator class computes the tables read by Tablebases, for endgames of up to
+ * Tablebase.MAX_PIECES pieces.  Every table a capture or promotion can lead to is made first,
+ * so KPK also makes KQK, KRK, KBK and KNK.
+ *
+ * A table is solved backwards from the mates one ply at a time.  Level 0 looks at every
+ * position once: mates are lost in 0 plies, stalemates are drawn, and a move leaving the table
+ * takes its result from the smaller table.  Then, for each level n, the positions decided at
+ * level n - 1 mark the positions one move before them, found by moving their pieces backwards
+ * on the bitboards, and only the marked positions are looked at again.  A position is won in
+ * n plies if one of its moves reaches a position lost in n - 1, and lost in n plies if every
+ * move reaches a won position, the longest of them won in n - 1.  When a move out of the table
+ * gives a longer result than level n, the position is woken again at that level.  What is
+ * still undecided when no level changes anything is a draw.
+ *
+ * The positions of a table are shared out in chunks among the threads, and each level runs as
+ * two passes with all threads finished in between: marking, which only ever sets bytes to 1,
+ * and deciding, where each thread writes only the positions of its own chunks.  The moves of
+ * each position are those of MoveGenerator, the same rules Player.checkMove() applies.
+ *
+ * java endgame.TablebaseGenerator directory [threads] KQK KRK KPK KBNK ...
+ */
+public class TablebaseGenerator {
+
+	/**
+	 * The number of positions a thread takes at a time.
+	 */
+	private static final int CHUNK = 1 << 14;
+
+	/**
+	 * The kinds of pass over a table.
+	 */
+	private static final int INITIALIZE = 0, MARK = 1, DECIDE = 2;
+
+	/**
+	 * The piece values used to decide which side of an endgame is white in its table's name.
+	 */
+	private static final int[] VALUES = {1, 3, 3, 5, 9};
+
+	/**
+	 * Where the tables are written, the tables made or found there so far and the threads.
+	 */
+	private final Path directory;
+	private final Tablebases tables;
+	private final int threads;
+	private final ExecutorService executor;
+
+	/**
+	 * The table being made, with one byte per position set when a position must be looked at
+	 * again at the next level, and one holding the level it must be looked at again because of
+	 * a move out of the table.
+	 */
+	private Tablebase table;
+	private byte[] marked, wake;
+
+	/**
+	 * The positions decided by the current pass, and the highest wake level set so far.
+	 */
+	private final AtomicLong decided = new AtomicLong();
+	private int maxWake;
+
+	/**
+	 * The constructor opens the tables already in the directory, creating it if need be.
+	 */
+	public TablebaseGenerator(Path directory, int threads) throws IOException{
+		this.directory = directory;
+		Files.createDirectories(directory);
+		tables = new Tablebases(directory);
+		this.threads = Math.max(1, threads);
+		executor = Executors.newFixedThreadPool(this.threads, new ThreadFactory(){
+			public Thread newThread(Runnable task){
+				Thread thread = new Thread(task, "tablebase-generator");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Returns the table of the endgame, making it and every table it leads to if they are not
+	 * in the directory yet.  The endgame may be named with either side first.
+	 */
+	public Tablebase generate(String name) throws IOException{
+		int[][] counts = counts(name);
+		name = canonicalName(counts);
+		Tablebase existing = tables.find(name);
+		if(existing != null)
+			return existing;
+
+		// Every endgame one capture or promotion away
+		for(int color=Position.WHITE; color<=Position.BLACK; color++){
+			for(int type=Position.PAWN; type<Position.KING; type++){
+				if(counts[color][type] == 0)
+					continue;
+				counts[color][type]--;
+				generateChild(counts);
+				if(type == Position.PAWN){
+					for(int promotion=Position.KNIGHT; promotion<=Position.QUEEN; promotion++){
+						counts[color][promotion]++;
+						generateChild(counts);
+						for(int taken=Position.KNIGHT; taken<=Position.QUEEN; taken++){
+							if(counts[1 - color][taken] == 0)
+								continue;
+							counts[1 - color][taken]--;
+							generateChild(counts);
+							counts[1 - color][taken]++;
+						}
+						counts[color][promotion]--;
+					}
+				}
+				counts[color][type]++;
+			}
+		}
+		return build(name);
+	}
+
+	/**
+	 * Makes the table of the piece counts unless only the kings are left.
+	 */
+	private void generateChild(int[][] counts) throws IOException{
+		for(int[] side: counts)
+			for(int count: side)
+				if(count > 0){
+					generate(Tablebase.name(counts));
+					return;
+				}
+	}
+
+	/**
+	 * Solves one table whose smaller tables are all open, writes it and returns it opened.
+	 */
+	private Tablebase build(String name) throws IOException{
+		long started = System.nanoTime();
+		Path file = directory.resolve(name + Tablebase.EXTENSION);
+		Path temporary = directory.resolve(name + Tablebase.EXTENSION + ".tmp");
+		table = Tablebase.create(temporary, name);
+		int size = (int) table.size();
+		marked = new byte[size];
+		wake = new byte[size];
+
+		maxWake = 0;
+		runPass(INITIALIZE, 0);
+		int level = 0;
+		do{
+			level++;
+			runPass(MARK, level - 1);
+			runPass(DECIDE, level);
+		}while(level < Tablebase.MAX_PLIES && (decided.get() > 0 || maxWake > level));
+
+		table.force();
+		table.close();
+		marked = null;
+		wake = null;
+		Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+		Tablebase finished = Tablebase.open(file);
+		tables.add(finished);
+		report(finished, level, System.nanoTime() - started);
+		return finished;
+	}
+
+	/**
+	 * Runs one pass over the table on every thread and waits for all of them.
+	 */
+	private void runPass(final int kind, final int level) throws IOException{
+		decided.set(0);
+		final AtomicLong next = new AtomicLong();
+		final long size = table.size();
+		Future<?>[] running = new Future<?>[threads];
+		for(int i=0; i<threads; i++){
+			running[i] = executor.submit(new Runnable(){
+				public void run(){
+					Worker worker = new Worker();
+					for(long start = next.getAndAdd(CHUNK); start < size; start = next.getAndAdd(CHUNK))
+						worker.pass(kind, level, start, Math.min(size, start + CHUNK));
+					worker.finish();
+				}
+			});
+		}
+		for(Future<?> pass: running){
+			try{
+				pass.get();
+			}catch(InterruptedException e){
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while making " + table.getName(), e);
+			}catch(ExecutionException e){
+				throw new IOException("Could not make " + table.getName(), e.getCause());
+			}
+		}
+	}
+
+	/**
+	 * The position, buffers and counts of one thread.
+	 */
+	private final class Worker {
+		private final Position position = new Position();
+		private final int[] moves = new int[MoveGenerator.MAX_MOVES];
+		private final int[] squares = new int[Tablebase.MAX_PIECES];
+		private long decidedHere;
+		private int wakeHere;
+
+		/**
+		 * Does one kind of pass over the indexes from start to end - 1.
+		 */
+		void pass(int kind, int level, long start, long end){
+			for(long index=start; index<end; index++){
+				switch(kind){
+				case INITIALIZE:
+					if(setUp(index))
+						decide(index, 0);
+					else
+						table.set(index, Tablebase.INVALID);
+					break;
+				case MARK:
+					if(table.get(index) == Tablebase.encode(level))
+						markPredecessors(index);
+					break;
+				default:
+					if(table.get(index) == Tablebase.DRAW && (marked[(int) index] != 0 || (wake[(int) index] & 0xFF) == level)){
+						marked[(int) index] = 0;
+						setUp(index);
+						decide(index, level);
+					}
+					break;
+				}
+			}
+		}
+
+		/**
+		 * Adds this thread's counts to the pass's.
+		 */
+		void finish(){
+			decided.addAndGet(decidedHere);
+			synchronized(TablebaseGenerator.this){
+				maxWake = Math.max(maxWake, wakeHere);
+			}
+		}
+
+		/**
+		 * Looks at every move of the set up position and decides it if its result is known
+		 * at this level, or sets the level it must be woken at.
+		 */
+		private void decide(long index, int level){
+			int count = MoveGenerator.generate(position, moves, 0);
+			if(count == 0){
+				if(position.isInCheck(position.getSideToMove())){
+					table.set(index, Tablebase.encode(0));
+					decidedHere++;
+				}
+				return;
+			}
+
+			int win = Integer.MAX_VALUE, loss = -1;
+			boolean allWon = true;
+			for(int i=0; i<count; i++){
+				int move = moves[i];
+				position.makeMove(move);
+				int result = Move.isCapture(move) || Move.isPromotion(move) ? tables.probe(position)
+						: table.get(table.index(position, false));
+				position.unmakeMove();
+				if(result == Tablebases.NOT_FOUND)
+					throw new IllegalStateException("No table after " + Move.toString(move) + " in " + table.getName());
+				if(Tablebase.isLoss(result))
+					win = Math.min(win, Tablebase.plies(result) + 1);
+				else if(Tablebase.isWin(result))
+					loss = Math.max(loss, Tablebase.plies(result) + 1);
+				else
+					allWon = false;
+			}
+
+			int plies = win != Integer.MAX_VALUE ? win : allWon ? loss : -1;
+			if(plies < 0 || plies > Tablebase.MAX_PLIES)
+				return;
+			if(plies <= level){
+				table.set(index, Tablebase.encode(plies));
+				decidedHere++;
+			}
+			else{
+				wake[(int) index] = (byte) plies;
+				wakeHere = Math.max(wakeHere, plies);
+			}
+		}
+
+		/**
+		 * Marks every position from which the side which just moved could have reached the
+		 * position at the index, by moving one of its pieces backwards to an empty square.
+		 */
+		private void markPredecessors(long index){
+			int pieces = table.pieces;
+			long occupied = 0;
+			for(int i=0; i<pieces; i++){
+				squares[i] = (int) (index >>> (6 * i)) & 63;
+				occupied |= 1L << squares[i];
+			}
+			int mover = 1 - (int) (index >>> (6 * pieces));
+
+			for(int i=0; i<pieces; i++){
+				if(table.colors[i] != mover)
+					continue;
+				int square = squares[i];
+				long origins;
+				if(table.types[i] == Position.PAWN)
+					origins = pawnOrigins(square, mover, occupied);
+				else
+					origins = Attacks.attacksFrom(square, mover, table.types[i], occupied) & ~occupied;
+				for(; origins != 0; origins &= origins - 1){
+					squares[i] = Long.numberOfTrailingZeros(origins);
+					marked[(int) indexOf(mover)] = 1;
+				}
+				squares[i] = square;
+			}
+		}
+
+		/**
+		 * Returns the empty squares a pawn of the color on the square could have come from
+		 * without capturing.
+		 */
+		private long pawnOrigins(int square, int color, long occupied){
+			int step = color == Position.WHITE ? -8 : 8;
+			int behind = square + step, behindRank = behind >>> 3;
+			if(behindRank == 0 || behindRank == 7 || (occupied & (1L << behind)) != 0)
+				return 0;
+			long origins = 1L << behind;
+			int doubleRank = color == Position.WHITE ? 3 : 4;
+			if((square >>> 3) == doubleRank && (occupied & (1L << (behind + step))) == 0)
+				origins |= 1L << (behind + step);
+			return origins;
+		}
+
+		/**
+		 * Returns the index of the squares with the given side to move, putting two pieces
+		 * of the same kind in order.
+		 */
+		private long indexOf(int side){
+			long index = side;
+			for(int i=table.pieces - 1; i>=0; i--){
+				int square = squares[i];
+				if(table.sameAsNext[i])
+					square = Math.min(square, squares[i + 1]);
+				else if(i > 0 && table.sameAsNext[i - 1])
+					square = Math.max(square, squares[i - 1]);
+				index = (index << 6) | square;
+			}
+			return index;
+		}
+
+		/**
+		 * Sets the position at the index up, returning false if it is impossible: two pieces
+		 * on a square, a pawn on the first or last rank, two pieces of a kind out of order, or
+		 * the side which is not to move in check.
+		 */
+		private boolean setUp(long index){
+			int pieces = table.pieces;
+			long occupied = 0;
+			for(int i=0; i<pieces; i++){
+				int square = (int) (index >>> (6 * i)) & 63;
+				if((occupied & (1L << square)) != 0)
+					return false;
+				if(table.types[i] == Position.PAWN && (square < 8 || square >= 56))
+					return false;
+				if(i > 0 && table.sameAsNext[i - 1] && square < squares[i - 1])
+					return false;
+				squares[i] = square;
+				occupied |= 1L << square;
+			}
+
+			position.clear();
+			position.setCastlingRights(0);
+			for(int i=0; i<pieces; i++)
+				position.put(squares[i], table.colors[i], table.types[i]);
+			int side = (int) (index >>> (6 * pieces));
+			position.setSideToMove(side);
+			return !position.isInCheck(1 - side);
+		}
+	}
+
+	/**
+	 * Prints how many positions of the finished table are won, drawn and lost.
+	 */
+	private static void report(Tablebase table, int levels, long nanos){
+		long wins = 0, draws = 0, losses = 0;
+		int longest = 0;
+		for(long index=0; index<table.size(); index++){
+			int value = table.get(index);
+			if(Tablebase.isWin(value)){
+				wins++;
+				longest = Math.max(longest, Tablebase.plies(value));
+			}
+			else if(Tablebase.isLoss(value))
+				losses++;
+			else if(value == Tablebase.DRAW)
+				draws++;
+		}
+		System.out.printf("%-6s %,12d won %,12d drawn %,12d lost  longest mate %d plies  %d levels  %.1f s%n",
+				table.getName(), wins, draws, losses, longest, levels, nanos / 1e9);
+	}
+
+	/**
+	 * Returns the piece counts, indexed by color and type, of an endgame name.
+	 */
+	private static int[][] counts(String name){
+		int[] colors = new int[name.length()], types = new int[name.length()];
+		Tablebase.parse(name, colors, types);
+		int[][] counts = new int[2][Position.KING];
+		for(int i=0; i<name.length(); i++)
+			if(types[i] != Position.KING)
+				counts[colors[i]][types[i]]++;
+		return counts;
+	}
+
+	/**
+	 * Returns the name of the endgame with the stronger side as white: more material, or else
+	 * the better pieces.
+	 */
+	private static String canonicalName(int[][] counts){
+		int white = 0, black = 0;
+		for(int type=Position.PAWN; type<Position.KING; type++){
+			white += counts[Position.WHITE][type] * VALUES[type];
+			black += counts[Position.BLACK][type] * VALUES[type];
+		}
+		for(int type=Position.QUEEN; white == black && type>=Position.PAWN; type--){
+			white += counts[Position.WHITE][type];
+			black += counts[Position.BLACK][type];
+		}
+		if(white >= black)
+			return Tablebase.name(counts);
+		return Tablebase.name(new int[][] {counts[Position.BLACK], counts[Position.WHITE]});
+	}
+
+	/**
+	 * Stops the threads.
+	 */
+	public void shutdown(){
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Makes the tables named after the directory and the optional number of threads.
+	 */
+	public static void main(String[] args) throws IOException{
+		if(args.length < 2){
+			System.err.println("Usage: java endgame.TablebaseGenerator directory [threads] KQK KRK KPK KBNK ...");
+			System.exit(2);
+		}
+		int first = 1, threads = Runtime.getRuntime().availableProcessors();
+		if(Character.isDigit(args[1].charAt(0))){
+			threads = Integer.parseInt(args[1]);
+			first = 2;
+		}
+		TablebaseGenerator generator = new TablebaseGenerator(Paths.get(args[0]), threads);
+		try{
+			for(int i=first; i<args.length; i++)
+				generator.generate(args[i].toUpperCase());
+		}finally{
+			generator.shutdown();
+		}
+	}
+
+}  // End TablebaseGenerator
@@ -0,0 +1,149 @@
+package endgame;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import rules.Fen;
+import rules.Move;
+import rules.MoveGenerator;
+import rules.Position;
+
+/**
+ * The Tablebases class looks positions up in every table of a directory.  A table of white
+ * against black also answers for the same pieces with the colors swapped, by turning the board
+ * over, so KQK covers a black queen as well.  A probe is a few bit counts, a short scan of the
+ * open tables and one read from a mapped file; nothing is allocated.  Positions with only the
+ * kings are drawn without a table.
+ *
+ * java endgame.Tablebases directory fen
+ */
+public class Tablebases implements Closeable {
+
+	/**
+	 * Returned by probe() when no table holds the position.
+	 */
+	public static final int NOT_FOUND = -1;
+
+	/**
+	 * The open tables.
+	 */
+	private Tablebase[] tables = new Tablebase[0];
+	private int maxPieces = 2;
+
+	/**
+	 * The constructor creates an empty set of tables.
+	 */
+	public Tablebases(){
+	}
+
+	/**
+	 * The constructor opens every table in the directory.
+	 */
+	public Tablebases(Path directory) throws IOException{
+		try(DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + Tablebase.EXTENSION)){
+			for(Path file: files)
+				add(Tablebase.open(file));
+		}
+	}
+
+	/**
+	 * Adds a table.
+	 */
+	public void add(Tablebase table){
+		tables = Arrays.copyOf(tables, tables.length + 1);
+		tables[tables.length - 1] = table;
+		maxPieces = Math.max(maxPieces, table.getPieces());
+	}
+
+	/**
+	 * Returns the open table with the given name, or null.
+	 */
+	public Tablebase find(String name){
+		for(Tablebase table: tables)
+			if(table.getName().equals(name))
+				return table;
+		return null;
+	}
+
+	/**
+	 * Returns the table byte of the position, which Tablebase.isWin(), isLoss() and plies()
+	 * read, or NOT_FOUND if no table holds it or it may still castle or take en passant.
+	 */
+	public int probe(Position position){
+		if(Long.bitCount(position.getOccupied()) > maxPieces || position.getCastlingRights() != 0
+				|| position.getEnPassantSquare() >= 0)
+			return NOT_FOUND;
+		int key = Tablebase.materialKey(position);
+		if(key == 0)
+			return Tablebase.DRAW;
+		for(Tablebase table: tables){
+			if(table.materialKey == key)
+				return table.probe(position, false);
+			if(table.mirroredKey == key)
+				return table.probe(position, true);
+		}
+		return NOT_FOUND;
+	}
+
+	/**
+	 * Returns the most pieces, kings included, of any open table.
+	 */
+	public int getMaxPieces(){
+		return maxPieces;
+	}
+
+	/**
+	 * Closes every table.
+	 */
+	public void close() throws IOException{
+		for(Tablebase table: tables)
+			table.close();
+	}
+
+	/**
+	 * Prints the result of the position given after the directory, and of each of its moves.
+	 */
+	public static void main(String[] args) throws IOException{
+		if(args.length < 2){
+			System.err.println("Usage: java endgame.Tablebases directory fen");
+			System.exit(2);
+		}
+		StringBuilder fen = new StringBuilder();
+		for(int i=1; i<args.length; i++)
+			fen.append(args[i]).append(' ');
+		Position position = new Position();
+		Fen.parse(fen, position);
+
+		try(Tablebases tablebases = new Tablebases(Paths.get(args[0]))){
+			System.out.println("Position: " + describe(tablebases.probe(position)));
+			int[] moves = new int[MoveGenerator.MAX_MOVES];
+			int count = MoveGenerator.generate(position, moves, 0);
+			for(int i=0; i<count; i++){
+				position.makeMove(moves[i]);
+				System.out.printf("%-6s %s%n", Move.toString(moves[i]), describe(tablebases.probe(position)));
+				position.unmakeMove();
+			}
+		}
+	}
+
+	/**
+	 * Returns a table byte in words, for the side to move.
+	 */
+	private static String describe(int value){
+		if(value == NOT_FOUND)
+			return "not in the tables";
+		if(value == Tablebase.INVALID)
+			return "impossible";
+		if(Tablebase.isWin(value))
+			return "win, mate in " + Tablebase.plies(value) + " plies";
+		if(Tablebase.isLoss(value))
+			return "loss, mated in " + Tablebase.plies(value) + " plies";
+		return "draw";
+	}
+
+}  // End Tablebases
@@ -0,0 +1,39 @@
+package engine;
+
+import rules.Position;
+
+/**
+ * The Evaluator class gives a score to a position in centipawns (hundredths of a pawn), from
+ * the point of view of the side to move.  The score is the material difference, using the same
+ * piece values as Piece.getValue() times 100, plus a bonus or penalty for the square each piece
+ * stands on taken from the PieceSquare tables.  The Position keeps both totals up to date as
+ * moves are made and unmade, so evaluating takes the same time however many pieces are left.
+ * The pawn structure is scored by a PawnTable, which remembers the score of each structure
+ * it meets, so the caller passes in its own table.
+ */
+public final class Evaluator {
+
+	/**
+	 * This class only holds static methods.
+	 */
+	private Evaluator(){
+	}
+
+	/**
+	 * Returns the score of the position for the side to move, taking the pawn structure score
+	 * from the table.
+	 */
+	public static int evaluate(Position position, PawnTable pawns){
+		return evaluate(position, pawns.probe(position));
+	}
+
+	/**
+	 * Returns the score for the side to move given the pawn structure score for white.
+	 */
+	private static int evaluate(Position position, int pawnScore){
+		int score = (position.getMaterial(Position.WHITE) - position.getMaterial(Position.BLACK)) * 100
+				+ position.getPieceSquare(Position.WHITE) - position.getPieceSquare(Position.BLACK) + pawnScore;
+		return position.getSideToMove() == Position.WHITE ? score : -score;
+	}
+
+}  // End Evaluator
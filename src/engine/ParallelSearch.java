@@ -0,0 +1,260 @@
+package engine;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import endgame.Tablebases;
+import rules.Fen;
+import rules.Move;
+import rules.Position;
+
+/**
+ * The ParallelSearch class searches one position with several threads using the "Lazy SMP"
+ * scheme.  Every thread runs its own iterative deepening Search on its own copy of the
+ * position; the only thing they share is the lock-free TranspositionTable.  Helper threads
+ * start at different depths, so they race ahead of the main thread and fill the table with
+ * results it can then use instead of searching.  The main thread's move is played, and the
+ * helpers are stopped as soon as it finishes.
+ *
+ * The main method measures the speed-up over a single thread:
+ * java engine.ParallelSearch [threads] [depth]
+ */
+public class ParallelSearch {
+
+	/**
+	 * The table all threads share.
+	 */
+	private final TranspositionTable table;
+
+	/**
+	 * One search and one position per thread; index 0 runs on the caller's thread.
+	 */
+	private final Search[] searches;
+	private final Position[] positions;
+
+	/**
+	 * Runs the helper searches.
+	 */
+	private final ExecutorService helpers;
+
+	/**
+	 * The pending helper searches of the current search.
+	 */
+	private final Future<?>[] running;
+
+	/**
+	 * The total positions visited by every thread in the last search, and how long it took.
+	 */
+	private long nodes, elapsedNanos;
+
+	/**
+	 * The constructor creates the given number of search threads sharing a table of the
+	 * given size in megabytes.
+	 */
+	public ParallelSearch(int threads, int megabytes){
+		table = new TranspositionTable(megabytes);
+		searches = new Search[Math.max(1, threads)];
+		positions = new Position[searches.length];
+		for(int i=0; i<searches.length; i++){
+			searches[i] = new Search(table);
+			searches[i].setFirstDepth(1 + (i & 1));
+			positions[i] = new Position();
+		}
+		running = new Future<?>[searches.length];
+		helpers = searches.length > 1 ? Executors.newFixedThreadPool(searches.length - 1, new ThreadFactory(){
+			public Thread newThread(Runnable task){
+				Thread thread = new Thread(task, "search-helper");
+				thread.setDaemon(true);
+				return thread;
+			}
+		}) : null;
+	}
+
+	/**
+	 * Searches the position with every thread and returns the main thread's best move, or
+	 * Move.NONE if there are no legal moves.  The limits are the same as Search.search().
+	 * The position is left as it was.
+	 */
+	public int search(Position position, int maxDepth, long millis){
+		clearStop();
+		return searchUnlessStopped(position, maxDepth, millis);
+	}
+
+	/**
+	 * The same as search(), except that a stop requested since clearStop() is kept.  A front
+	 * end clears the stop when it is told to search and then starts the search on another
+	 * thread, so a stop which arrives before that thread gets going is not lost.
+	 */
+	int searchUnlessStopped(Position position, int maxDepth, long millis){
+		long start = System.nanoTime();
+		for(int i=1; i<searches.length; i++){
+			final Search helper = searches[i];
+			final Position copy = positions[i];
+			copy.copyFrom(position);
+			helper.clearStop();
+			running[i] = helpers.submit(new Runnable(){
+				public void run(){
+					helper.iterate(copy, Search.MAX_DEPTH, 0);
+				}
+			});
+		}
+
+		int move = searches[0].iterate(position, maxDepth, millis);
+
+		// Stop the helpers and wait until they no longer use their positions
+		for(int i=1; i<searches.length; i++)
+			searches[i].stop();
+		nodes = searches[0].getNodes();
+		for(int i=1; i<searches.length; i++){
+			try{
+				running[i].get();
+			}catch(Exception e){
+				throw new IllegalStateException("Search helper failed", e);
+			}
+			nodes += searches[i].getNodes();
+		}
+		elapsedNanos = Math.max(1, System.nanoTime() - start);
+		return move;
+	}
+
+	/**
+	 * Asks the running search to stop as soon as possible.  Safe to call from another thread.
+	 */
+	public void stop(){
+		for(Search search: searches)
+			search.stop();
+	}
+
+	/**
+	 * Sets the endgame tables every thread probes, or null for none.
+	 */
+	public void setTablebases(Tablebases tablebases){
+		for(Search search: searches)
+			search.setTablebases(tablebases);
+	}
+
+	/**
+	 * Clears a previous stop request, before handing the search to searchUnlessStopped().
+	 */
+	void clearStop(){
+		for(Search search: searches)
+			search.clearStop();
+	}
+
+	/**
+	 * Empties the shared table, for example before a new game.
+	 */
+	public void clear(){
+		table.clear();
+	}
+
+	/**
+	 * Stops the helper threads for good.
+	 */
+	public void shutdown(){
+		if(helpers != null)
+			helpers.shutdownNow();
+	}
+
+	/**
+	 * Returns the number of search threads.
+	 */
+	public int getThreads(){
+		return searches.length;
+	}
+
+	/**
+	 * Returns the score of the main thread's last finished iteration.
+	 */
+	public int getScore(){
+		return searches[0].getScore();
+	}
+
+	/**
+	 * Returns the depth of the main thread's last finished iteration.
+	 */
+	public int getDepth(){
+		return searches[0].getDepth();
+	}
+
+	/**
+	 * Returns the positions visited by all threads in the last search.
+	 */
+	public long getNodes(){
+		return nodes;
+	}
+
+	/**
+	 * Returns the positions visited per second by all threads in the last search.
+	 */
+	public long getNodesPerSecond(){
+		return nodes * 1000000000L / elapsedNanos;
+	}
+
+	/**
+	 * Returns the fraction of pawn structure lookups of all threads in the last search which
+	 * found the structure already scored, from 0 to 1.
+	 */
+	public double getPawnHitRate(){
+		long probes = 0, hits = 0;
+		for(Search search: searches){
+			probes += search.getPawnTable().getProbes();
+			hits += search.getPawnTable().getHits();
+		}
+		return probes == 0 ? 0 : (double) hits / probes;
+	}
+
+	/**
+	 * Returns the time taken by the last search in milliseconds.
+	 */
+	public long getElapsedMillis(){
+		return elapsedNanos / 1000000L;
+	}
+
+	/**
+	 * Searches a few positions to a fixed depth with 1 thread and then with the given number
+	 * of threads, each time with an empty table, and prints the time-to-depth speed-up and the
+	 * combined nodes per second.
+	 */
+	public static void main(String[] args){
+		int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+		int depth = args.length > 1 ? Integer.parseInt(args[1]) : 9;
+		String[] fens = {
+			Fen.START,
+			"r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+			"r1bq1rk1/pp2bppp/2n1pn2/3p4/2PP4/2N1PN2/PP3PPP/R2QKB1R w KQ - 0 8",
+			"8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1"
+		};
+
+		ParallelSearch single = new ParallelSearch(1, 128);
+		ParallelSearch parallel = new ParallelSearch(threads, 128);
+		Position position = new Position();
+		double singleTotal = 0, parallelTotal = 0;
+
+		System.out.printf("%-8s %12s %14s %12s %14s %8s%n", "position", "1 thread ms", "nodes/s",
+				threads + " threads ms", "nodes/s", "speed-up");
+		for(int i=0; i<fens.length; i++){
+			Fen.parse(fens[i], position);
+			single.clear();
+			int move = single.search(position, depth, 0);
+			long singleMillis = Math.max(1, single.getElapsedMillis());
+
+			Fen.parse(fens[i], position);
+			parallel.clear();
+			parallel.search(position, depth, 0);
+			long parallelMillis = Math.max(1, parallel.getElapsedMillis());
+
+			singleTotal += singleMillis;
+			parallelTotal += parallelMillis;
+			System.out.printf("%-8d %12d %14d %12d %14d %8.2f  %s%n", i + 1, singleMillis,
+					single.getNodesPerSecond(), parallelMillis, parallel.getNodesPerSecond(),
+					(double) singleMillis / parallelMillis, Move.toString(move));
+		}
+		System.out.printf("Total time-to-depth speed-up with %d threads: %.2f%n", threads, singleTotal / parallelTotal);
+		single.shutdown();
+		parallel.shutdown();
+	}
+
+}  // End ParallelSearch
@@ -0,0 +1,186 @@
+package engine;
+
+import rules.Bitboards;
+import rules.Position;
+
+/**
+ * The PawnTable class scores the pawn structure of a position and remembers the result by the
+ * position's pawn key.  Most moves do not move a pawn, so a search keeps meeting the same few
+ * pawn structures, and the table answers for them without looking at the pawns again.  The
+ * table is direct-mapped: each key has exactly one entry, picked by its low bits, and a new
+ * structure simply replaces whatever was there.
+ *
+ * An entry keeps the score in centipawns from white's point of view, made of penalties for
+ * doubled, isolated and backward pawns and a bonus for passed pawns growing as they advance,
+ * and for each color its passed pawns and its pawn attack span: every square its pawns could
+ * attack if they moved forward.  The table counts its probes and hits.  It is not safe for
+ * several threads; each Search has its own.
+ */
+public class PawnTable {
+
+	/**
+	 * The penalties in centipawns for each doubled, isolated and backward pawn.
+	 */
+	public static final int DOUBLED = 12, ISOLATED = 15, BACKWARD = 10;
+
+	/**
+	 * The bonus in centipawns for a passed pawn on each rank, counted from its own side.
+	 */
+	private static final int[] PASSED = {0, 5, 10, 20, 35, 60, 100, 0};
+
+	/**
+	 * The entries: a pawn key, its score, and the passed pawns and attack span of each color
+	 * at index 2 * entry + color.  An empty entry has key 0 and all zeros, which is also the
+	 * correct entry for a position without pawns, whose pawn key is 0.
+	 */
+	private final long[] keys;
+	private final int[] scores;
+	private final long[] passed, spans;
+	private final int mask;
+
+	/**
+	 * The entry of the last probe.
+	 */
+	private int entry;
+
+	/**
+	 * The number of probes and how many found their pawn structure already stored.
+	 */
+	private long probes, hits;
+
+	/**
+	 * The constructor creates a table of the given number of entries, rounded down to a
+	 * power of two.
+	 */
+	public PawnTable(int entries){
+		int size = Integer.highestOneBit(Math.max(1, entries));
+		keys = new long[size];
+		scores = new int[size];
+		passed = new long[2 * size];
+		spans = new long[2 * size];
+		mask = size - 1;
+	}
+
+	/**
+	 * Returns the pawn structure score of the position from white's point of view, scoring
+	 * and storing it if the table does not hold it.  The passed pawns and attack spans of the
+	 * position can then be read with getPassed() and getAttackSpan().
+	 */
+	public int probe(Position position){
+		long key = position.getPawnKey();
+		entry = (int) key & mask;
+		probes++;
+		if(keys[entry] == key){
+			hits++;
+			return scores[entry];
+		}
+		keys[entry] = key;
+		scores[entry] = evaluate(position.getPieces(Position.WHITE, Position.PAWN),
+				position.getPieces(Position.BLACK, Position.PAWN), passed, spans, 2 * entry);
+		return scores[entry];
+	}
+
+	/**
+	 * Returns the passed pawns of a color in the position of the last probe.
+	 */
+	public long getPassed(int color){
+		return passed[2 * entry + color];
+	}
+
+	/**
+	 * Returns the attack span of a color in the position of the last probe.
+	 */
+	public long getAttackSpan(int color){
+		return spans[2 * entry + color];
+	}
+
+	/**
+	 * Returns the number of probes since the table was created or the counts were reset.
+	 */
+	public long getProbes(){
+		return probes;
+	}
+
+	/**
+	 * Returns the number of probes which found their pawn structure stored.
+	 */
+	public long getHits(){
+		return hits;
+	}
+
+	/**
+	 * Returns the fraction of probes which found their pawn structure stored, from 0 to 1.
+	 */
+	public double getHitRate(){
+		return probes == 0 ? 0 : (double) hits / probes;
+	}
+
+	/**
+	 * Sets the probe and hit counts back to 0.
+	 */
+	public void resetCounts(){
+		probes = 0;
+		hits = 0;
+	}
+
+	/**
+	 * Scores the pawns of both colors from white's point of view, and writes the passed pawns
+	 * and attack span of each color into the arrays at index start + color.  Each term is
+	 * worked out for all the pawns of a color at once with shifts and fills.
+	 */
+	static int evaluate(long white, long black, long[] passedOut, long[] spansOut, int start){
+		long whiteAttacks = ((white & ~Bitboards.FILE_A) << 7) | ((white & ~Bitboards.FILE_H) << 9);
+		long blackAttacks = ((black & ~Bitboards.FILE_A) >>> 9) | ((black & ~Bitboards.FILE_H) >>> 7);
+		long whiteSpan = northFill(whiteAttacks), blackSpan = southFill(blackAttacks);
+		spansOut[start + Position.WHITE] = whiteSpan;
+		spansOut[start + Position.BLACK] = blackSpan;
+
+		// A pawn is passed if no enemy pawn stands in front of it or can capture on the way
+		long whitePassed = white & ~southFill((black >>> 8) | blackAttacks);
+		long blackPassed = black & ~northFill((white << 8) | whiteAttacks);
+		passedOut[start + Position.WHITE] = whitePassed;
+		passedOut[start + Position.BLACK] = blackPassed;
+
+		// Backward: no pawn beside or behind can ever guard the square in front, and an enemy pawn does
+		long whiteBackward = ((blackAttacks & ~whiteSpan) >>> 8) & white;
+		long blackBackward = ((whiteAttacks & ~blackSpan) << 8) & black;
+
+		int score = structure(white, whiteBackward) - structure(black, blackBackward);
+		for(; whitePassed != 0; whitePassed &= whitePassed - 1)
+			score += PASSED[Long.numberOfTrailingZeros(whitePassed) >>> 3];
+		for(; blackPassed != 0; blackPassed &= blackPassed - 1)
+			score -= PASSED[7 - (Long.numberOfTrailingZeros(blackPassed) >>> 3)];
+		return score;
+	}
+
+	/**
+	 * Returns the penalties of one color's doubled, isolated and backward pawns, given which
+	 * are backward.  An isolated pawn is not also counted as backward.
+	 */
+	private static int structure(long pawns, long backward){
+		long files = southFill(northFill(pawns));
+		long isolated = pawns & ~(((files & ~Bitboards.FILE_A) >>> 1) | ((files & ~Bitboards.FILE_H) << 1));
+		int doubled = Long.bitCount(pawns & (northFill(pawns) << 8));
+		return -DOUBLED * doubled - ISOLATED * Long.bitCount(isolated)
+				- BACKWARD * Long.bitCount(backward & ~isolated);
+	}
+
+	/**
+	 * Returns the bitboard with every square above a set square set too.
+	 */
+	private static long northFill(long bitboard){
+		bitboard |= bitboard << 8;
+		bitboard |= bitboard << 16;
+		return bitboard | (bitboard << 32);
+	}
+
+	/**
+	 * Returns the bitboard with every square below a set square set too.
+	 */
+	private static long southFill(long bitboard){
+		bitboard |= bitboard >>> 8;
+		bitboard |= bitboard >>> 16;
+		return bitboard | (bitboard >>> 32);
+	}
+
+}  // End PawnTable
@@ -0,0 +1,461 @@
+package engine;
+
+import endgame.Tablebase;
+import endgame.Tablebases;
+import rules.Move;
+import rules.MoveGenerator;
+import rules.Position;
+import rules.StaticExchange;
+
+/**
+ * The Search class picks a move for the side to move with an iterative deepening alpha-beta
+ * search in negamax form: the position is searched 1 ply deep, then 2, and so on until the
+ * depth or time limit is reached, and the best move of the last finished iteration is played.
+ * Each iteration searches the previous best move first, which makes the alpha-beta cutoffs
+ * much more effective.  Captures are searched past the nominal depth (quiescence search) so
+ * the score is never taken in the middle of an exchange.  Captures which lose material once
+ * every recapture is counted (see StaticExchange) are tried after the killer moves, and are
+ * left out of the quiescence search altogether.
+ *
+ * Results are stored in a TranspositionTable keyed by the position's Zobrist key.  All move
+ * lists are written into one preallocated buffer and moves are made and unmade on the
+ * caller's position, so searching does not allocate.
+ */
+public class Search {
+
+	/**
+	 * The score of being checkmated at the root; a mate in n plies scores MATE - n.
+	 */
+	public static final int MATE = 30000;
+
+	/**
+	 * Scores beyond this are mate scores.
+	 */
+	public static final int MATE_BOUND = MATE - 1000;
+
+	/**
+	 * The deepest the search can go, including quiescence and check extensions.
+	 */
+	public static final int MAX_DEPTH = 64;
+
+	/**
+	 * Move ordering scores for the transposition table move, captures, killer moves and
+	 * captures which lose material.
+	 */
+	private static final int TT_MOVE_SCORE = 1 << 30, CAPTURE_SCORE = 1 << 20, KILLER_SCORE = 1 << 19,
+			LOSING_CAPTURE_SCORE = 1 << 18;
+
+	/**
+	 * The number of entries of the pawn structure table.
+	 */
+	private static final int PAWN_TABLE_SIZE = 1 << 14;
+
+	/**
+	 * The table of searched positions.
+	 */
+	private final TranspositionTable table;
+
+	/**
+	 * The endgame tables giving the perfect result of positions with few pieces, or null.
+	 */
+	private Tablebases tablebases;
+
+	/**
+	 * The pawn structure scores of the positions met, kept between searches.
+	 */
+	private final PawnTable pawnTable = new PawnTable(PAWN_TABLE_SIZE);
+
+	/**
+	 * The moves of every ply, ply n at n * MAX_MOVES, and their ordering scores.
+	 */
+	private final int[] moves = new int[(MAX_DEPTH + 1) * MoveGenerator.MAX_MOVES];
+	private final int[] scores = new int[moves.length];
+
+	/**
+	 * Two quiet moves per ply which recently caused a beta cutoff.
+	 */
+	private final int[][] killers = new int[MAX_DEPTH + 1][2];
+
+	/**
+	 * The position being searched.
+	 */
+	private Position position;
+
+	/**
+	 * The number of positions visited by the current search.
+	 */
+	private long nodes;
+
+	/**
+	 * When the search must stop, in System.nanoTime() units.
+	 */
+	private long deadline;
+
+	/**
+	 * Set to stop the search as soon as possible.  May be set from another thread.
+	 */
+	private volatile boolean stopped;
+
+	/**
+	 * The results of the last finished iteration.
+	 */
+	private int bestMove, bestScore, completedDepth;
+
+	/**
+	 * The best root move of the iteration in progress.
+	 */
+	private int rootMove;
+
+	/**
+	 * When the current search started, in System.nanoTime() units.
+	 */
+	private long startTime;
+
+	/**
+	 * The depth of the first iteration.  Helper threads of a ParallelSearch start at
+	 * different depths so they do not all search the same tree in step.
+	 */
+	private int firstDepth = 1;
+
+	/**
+	 * The constructor takes the table of searched positions, which may be kept between
+	 * searches.
+	 */
+	public Search(TranspositionTable table){
+		this.table = table;
+	}
+
+	/**
+	 * Searches the position until the depth is reached or the time runs out, and returns the
+	 * best move found, or Move.NONE if there are no legal moves.  A time of 0 or less means no
+	 * time limit.  The position is left as it was.
+	 */
+	public int search(Position position, int maxDepth, long millis){
+		stopped = false;
+		return iterate(position, maxDepth, millis);
+	}
+
+	/**
+	 * Runs the iterative deepening loop.  Unlike search(), a stop requested before the call
+	 * is kept, so a ParallelSearch can stop a helper thread before it has even started.
+	 */
+	int iterate(Position position, int maxDepth, long millis){
+		this.position = position;
+		nodes = 0;
+		pawnTable.resetCounts();
+		startTime = System.nanoTime();
+		deadline = millis > 0 ? startTime + millis * 1000000L : Long.MAX_VALUE;
+		bestMove = Move.NONE;
+		bestScore = 0;
+		completedDepth = 0;
+		for(int[] pair: killers){
+			pair[0] = Move.NONE;
+			pair[1] = Move.NONE;
+		}
+
+		// Any legal move beats none if the first iteration is cut short
+		int count = MoveGenerator.generate(position, moves, 0);
+		if(count > 0)
+			bestMove = moves[0];
+
+		for(int depth=firstDepth; depth <= Math.min(maxDepth, MAX_DEPTH - 1); depth++){
+			rootMove = Move.NONE;
+			int score = negamax(depth, -MATE - 1, MATE + 1, 0);
+			if(stopped)
+				break;
+			bestScore = score;
+			completedDepth = depth;
+			if(rootMove != Move.NONE)
+				bestMove = rootMove;
+			if(Math.abs(score) >= MATE_BOUND)
+				break;
+		}
+		return bestMove;
+	}
+
+	/**
+	 * Clears a previous stop request, before handing the search to iterate().
+	 */
+	void clearStop(){
+		stopped = false;
+	}
+
+	/**
+	 * Sets the depth of the first iteration.
+	 */
+	void setFirstDepth(int depth){
+		firstDepth = depth;
+	}
+
+	/**
+	 * Sets the endgame tables to probe during the search, or null for none.
+	 */
+	public void setTablebases(Tablebases tablebases){
+		this.tablebases = tablebases;
+	}
+
+	/**
+	 * Returns the table of pawn structure scores.  Its counts cover the last search, so its
+	 * hit rate shows how often that search met a structure it had scored already.
+	 */
+	public PawnTable getPawnTable(){
+		return pawnTable;
+	}
+
+	/**
+	 * Asks the running search to stop as soon as possible.  Safe to call from another thread.
+	 */
+	public void stop(){
+		stopped = true;
+	}
+
+	/**
+	 * Returns the score of the last finished iteration, for the side to move at the root.
+	 */
+	public int getScore(){
+		return bestScore;
+	}
+
+	/**
+	 * Returns the depth of the last finished iteration.
+	 */
+	public int getDepth(){
+		return completedDepth;
+	}
+
+	/**
+	 * Returns the number of positions visited by the last search.
+	 */
+	public long getNodes(){
+		return nodes;
+	}
+
+	/**
+	 * Returns the milliseconds taken by the last search so far.
+	 */
+	public long getElapsedMillis(){
+		return (System.nanoTime() - startTime) / 1000000L;
+	}
+
+	/**
+	 * Returns the positions visited per second by the last search.
+	 */
+	public long getNodesPerSecond(){
+		long nanos = Math.max(1, System.nanoTime() - startTime);
+		return nodes * 1000000000L / nanos;
+	}
+
+	/**
+	 * Returns the score of the position for the side to move, searched depth plies deep,
+	 * knowing the caller only cares about scores between alpha and beta.
+	 */
+	private int negamax(int depth, int alpha, int beta, int ply){
+		if((++nodes & 1023) == 0 && System.nanoTime() > deadline)
+			stopped = true;
+		if(stopped)
+			return 0;
+
+		if(ply > 0 && (position.isRepetition() || position.getHalfmoveClock() >= 100))
+			return 0;
+
+		// The tables know the result of an endgame exactly
+		if(ply > 0 && tablebases != null && Long.bitCount(position.getOccupied()) <= tablebases.getMaxPieces()){
+			int result = tablebases.probe(position);
+			if(result != Tablebases.NOT_FOUND && result != Tablebase.INVALID)
+				return tablebaseScore(result, ply);
+		}
+
+		boolean inCheck = position.isInCheck(position.getSideToMove());
+		if(inCheck)
+			depth++;
+		if(depth <= 0 || ply >= MAX_DEPTH - 1)
+			return quiescence(alpha, beta, ply);
+
+		// Use the stored result if it was searched deep enough
+		long key = position.getKey();
+		long entry = table.probe(key);
+		int ttMove = TranspositionTable.moveOf(entry);
+		if(entry != 0 && ply > 0 && TranspositionTable.depthOf(entry) >= depth){
+			int score = fromTable(TranspositionTable.scoreOf(entry), ply);
+			int bound = TranspositionTable.boundOf(entry);
+			if(bound == TranspositionTable.EXACT
+					|| (bound == TranspositionTable.LOWER && score >= beta)
+					|| (bound == TranspositionTable.UPPER && score <= alpha))
+				return score;
+		}
+
+		int start = ply * MoveGenerator.MAX_MOVES;
+		int end = MoveGenerator.generate(position, moves, start);
+		if(end == start)
+			return inCheck ? -MATE + ply : 0;
+		scoreMoves(start, end, ttMove, ply);
+
+		int originalAlpha = alpha;
+		int best = -MATE - 1, bestHere = Move.NONE;
+		for(int i=start; i<end; i++){
+			int move = pickNext(i, end);
+			position.makeMove(move);
+			int score = -negamax(depth - 1, -beta, -alpha, ply + 1);
+			position.unmakeMove();
+			if(stopped)
+				return 0;
+
+			if(score > best){
+				best = score;
+				bestHere = move;
+				if(score > alpha){
+					alpha = score;
+					if(score >= beta){
+						if(!Move.isCapture(move) && killers[ply][0] != move){
+							killers[ply][1] = killers[ply][0];
+							killers[ply][0] = move;
+						}
+						break;
+					}
+				}
+			}
+		}
+
+		if(ply == 0)
+			rootMove = bestHere;
+		int bound = best >= beta ? TranspositionTable.LOWER
+				: best > originalAlpha ? TranspositionTable.EXACT : TranspositionTable.UPPER;
+		table.store(key, bestHere, toTable(best, ply), depth, bound);
+		return best;
+	}
+
+	/**
+	 * Searches only captures and promotions until the position is quiet, so the static
+	 * evaluation is never used while pieces are hanging.  The side to move may also "stand
+	 * pat" and take the static score if every capture is worse.
+	 */
+	private int quiescence(int alpha, int beta, int ply){
+		if((++nodes & 1023) == 0 && System.nanoTime() > deadline)
+			stopped = true;
+		if(stopped)
+			return 0;
+
+		int standPat = Evaluator.evaluate(position, pawnTable);
+		if(standPat >= beta || ply >= MAX_DEPTH - 1)
+			return standPat;
+		if(standPat > alpha)
+			alpha = standPat;
+
+		int start = ply * MoveGenerator.MAX_MOVES;
+		int end = MoveGenerator.generate(position, moves, start);
+
+		// Keep only the promotions and the captures which do not lose material
+		int kept = start;
+		for(int i=start; i<end; i++)
+			if(Move.isPromotion(moves[i]) || (Move.isCapture(moves[i]) && !isLosingCapture(moves[i])))
+				moves[kept++] = moves[i];
+		scoreMoves(start, kept, Move.NONE, ply);
+
+		for(int i=start; i<kept; i++){
+			int move = pickNext(i, kept);
+			position.makeMove(move);
+			int score = -quiescence(-beta, -alpha, ply + 1);
+			position.unmakeMove();
+			if(stopped)
+				return 0;
+			if(score >= beta)
+				return score;
+			if(score > alpha)
+				alpha = score;
+		}
+		return alpha;
+	}
+
+	/**
+	 * Gives each move an ordering score: the table move first, then captures with the most
+	 * valuable victim and least valuable attacker first, then killer moves.
+	 */
+	private void scoreMoves(int start, int end, int ttMove, int ply){
+		for(int i=start; i<end; i++){
+			int move = moves[i];
+			int score = 0;
+			if(move == ttMove)
+				score = TT_MOVE_SCORE;
+			else if(Move.isCapture(move) || Move.isPromotion(move)){
+				int victim = position.getPiece(Move.to(move));
+				int victimValue = victim == Position.NO_PIECE ? 1 : Position.VALUES[Position.typeOf(victim)];
+				int attacker = Position.typeOf(position.getPiece(Move.from(move)));
+				score = CAPTURE_SCORE + victimValue * 16 - attacker;
+				if(Move.isPromotion(move))
+					score += Position.VALUES[Move.promotionType(move)] * 16;
+				else if(isLosingCapture(move))
+					score += LOSING_CAPTURE_SCORE - CAPTURE_SCORE;
+			}
+			else if(move == killers[ply][0] || move == killers[ply][1])
+				score = KILLER_SCORE;
+			scores[i] = score;
+		}
+	}
+
+	/**
+	 * Returns true if the capture loses material once the exchange has played out.  Taking
+	 * a piece worth at least the capturing one never does, so the exchange is only worked
+	 * out for the others.
+	 */
+	private boolean isLosingCapture(int move){
+		int victim = position.getPiece(Move.to(move));
+		if(victim == Position.NO_PIECE)
+			return false;
+		int attacker = Position.typeOf(position.getPiece(Move.from(move)));
+		return attacker != Position.KING && Position.VALUES[attacker] > Position.VALUES[Position.typeOf(victim)]
+				&& StaticExchange.evaluate(position, move) < 0;
+	}
+
+	/**
+	 * Swaps the best scored move from i to end into place i and returns it.
+	 */
+	private int pickNext(int i, int end){
+		int best = i;
+		for(int j=i+1; j<end; j++)
+			if(scores[j] > scores[best])
+				best = j;
+		int move = moves[best];
+		moves[best] = moves[i];
+		moves[i] = move;
+		int score = scores[best];
+		scores[best] = scores[i];
+		scores[i] = score;
+		return move;
+	}
+
+	/**
+	 * Turns a table result into a search score at the ply: a mate the given number of plies
+	 * after this position is a mate that many plies further from the root.
+	 */
+	private static int tablebaseScore(int result, int ply){
+		if(Tablebase.isWin(result))
+			return MATE - ply - Tablebase.plies(result);
+		if(Tablebase.isLoss(result))
+			return -MATE + ply + Tablebase.plies(result);
+		return 0;
+	}
+
+	/**
+	 * Mate scores are stored relative to the position rather than the root, so they stay
+	 * correct when the position is found again at a different ply.
+	 */
+	private static int toTable(int score, int ply){
+		if(score >= MATE_BOUND)
+			return score + ply;
+		if(score <= -MATE_BOUND)
+			return score - ply;
+		return score;
+	}
+
+	/**
+	 * Turns a stored score back into a score relative to the root.
+	 */
+	private static int fromTable(int score, int ply){
+		if(score >= MATE_BOUND)
+			return score - ply;
+		if(score <= -MATE_BOUND)
+			return score + ply;
+		return score;
+	}
+
+}  // End Search
@@ -0,0 +1,112 @@
+package engine;
+
+/**
+ * The TranspositionTable class remembers the result of searching a position, keyed by its
+ * Zobrist key, so a position reached again by a different move order is not searched twice.
+ * Entries live in one flat long array, two longs per entry: the key xored with the packed data,
+ * then the packed data.  When two positions map to the same slot the newer or deeper result
+ * replaces the older one.
+ *
+ * Several search threads may share one table without any locking.  Two threads writing the
+ * same slot at once can leave the key half of one entry with the data half of the other, but
+ * then the stored key xored with the data no longer gives the position's key, so the torn
+ * entry is simply treated as missing.
+ *
+ * The packed data holds the best move (bits 0-15), the score (bits 16-31, signed), the depth
+ * (bits 32-39) and the bound type (bits 40-41).
+ */
+public class TranspositionTable {
+
+	/**
+	 * Bound types: the score is exact, a lower bound (the search failed high) or an upper
+	 * bound (the search failed low).
+	 */
+	public static final int EXACT = 1, LOWER = 2, UPPER = 3;
+
+	/**
+	 * The key and data of every entry.
+	 */
+	private final long[] table;
+
+	/**
+	 * The number of entries minus 1, used to map a key to a slot.
+	 */
+	private final int mask;
+
+	/**
+	 * The constructor sizes the table to the largest power of two number of entries that fits
+	 * in the given number of megabytes.
+	 */
+	public TranspositionTable(int megabytes){
+		long entries = Long.highestOneBit(Math.max(1, (long) megabytes << 20) / 16);
+		entries = Math.max(1024, Math.min(entries, 1 << 28));
+		table = new long[(int) entries * 2];
+		mask = (int) entries - 1;
+	}
+
+	/**
+	 * Returns the packed data stored for the key, or 0 if the position is not in the table.
+	 */
+	public long probe(long key){
+		int slot = ((int) key & mask) << 1;
+		long data = table[slot + 1];
+		return (table[slot] ^ data) == key ? data : 0;
+	}
+
+	/**
+	 * Stores the result of a search, unless the slot holds a deeper search of the same position.
+	 */
+	public void store(long key, int move, int score, int depth, int bound){
+		int slot = ((int) key & mask) << 1;
+		long old = table[slot + 1];
+		if(((table[slot] ^ old) == key) && (depthOf(old) > depth))
+			return;
+		long data = pack(move, score, depth, bound);
+		table[slot] = key ^ data;
+		table[slot + 1] = data;
+	}
+
+	/**
+	 * Empties the table.
+	 */
+	public void clear(){
+		java.util.Arrays.fill(table, 0);
+	}
+
+	/**
+	 * Packs the fields of an entry into one long.
+	 */
+	static long pack(int move, int score, int depth, int bound){
+		return (move & 0xFFFFL) | ((score & 0xFFFFL) << 16) | ((long) (depth & 0xFF) << 32)
+				| ((long) bound << 40);
+	}
+
+	/**
+	 * Returns the best move of packed data.
+	 */
+	public static int moveOf(long data){
+		return (int) (data & 0xFFFF);
+	}
+
+	/**
+	 * Returns the score of packed data.
+	 */
+	public static int scoreOf(long data){
+		return (short) (data >>> 16);
+	}
+
+	/**
+	 * Returns the depth of packed data.
+	 */
+	public static int depthOf(long data){
+		return (int) ((data >>> 32) & 0xFF);
+	}
+
+	/**
+	 * Returns the bound type of packed data, or 0 if the data is empty.
+	 */
+	public static int boundOf(long data){
+		return (int) ((data >>> 40) & 3);
+	}
+
+}  // End TranspositionTable
@@ -0,0 +1,377 @@
+package engine;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.concurrent.CountDownLatch;
+
+import endgame.Tablebases;
+import game.Game;
+import rules.Move;
+import rules.MoveGenerator;
+import rules.Position;
+
+/**
+ * The Uci class lets chess programs which speak the Universal Chess Interface use this engine
+ * over standard input and output.  It understands uci, isready, ucinewgame,
+ * position [startpos | fen ...] [moves ...], go with depth, movetime, wtime, btime, winc,
+ * binc, movestogo or infinite, stop, setoption name Threads, Hash or TablebasePath, and quit.
+ *
+ * The moves of a position command are played through a Game, and so through
+ * Player.checkMove() and the rules of the pieces.  Searches run on their own thread while
+ * this one keeps reading, so stop is seen at once; the search looks at its stop flag at every
+ * node, so it answers with bestmove within a millisecond or so.  Lines are split by hand
+ * rather than with regular expressions, and output goes through one BufferedWriter which is
+ * flushed after each reply.
+ *
+ * java engine.Uci
+ */
+public class Uci {
+
+	/**
+	 * The name and author sent in reply to uci.
+	 */
+	private static final String NAME = "Chess", AUTHOR = "alexsotis33";
+
+	/**
+	 * The default and largest Threads and Hash option values.
+	 */
+	private static final int DEFAULT_THREADS = 1, MAX_THREADS = 64, DEFAULT_HASH = 64, MAX_HASH = 4096;
+
+	/**
+	 * Time kept back for the program and the GUI to pass the move along, in milliseconds.
+	 */
+	private static final long MOVE_OVERHEAD = 30;
+
+	/**
+	 * The game the position commands are played in.
+	 */
+	private final Game game = new Game();
+	private final int[] moves = new int[MoveGenerator.MAX_MOVES];
+
+	/**
+	 * The engine and its option values.
+	 */
+	private ParallelSearch search;
+	private int threads = DEFAULT_THREADS, hash = DEFAULT_HASH;
+	private Tablebases tablebases;
+
+	/**
+	 * The running search, or null.
+	 */
+	private Thread searching;
+
+	/**
+	 * Held closed by a "go infinite" search, which may not send bestmove before "stop"
+	 * even if it finishes first, for example on finding a mate.
+	 */
+	private volatile CountDownLatch release = new CountDownLatch(0);
+
+	/**
+	 * Replies to the GUI.  The search thread writes bestmove while this one may be writing
+	 * readyok, so every write holds the writer's lock.
+	 */
+	private final Writer out;
+
+	/**
+	 * The line being read and how far into it the next token starts.
+	 */
+	private String line;
+	private int index;
+
+	/**
+	 * The constructor writes its replies to the given writer.
+	 */
+	public Uci(Writer out){
+		this.out = out;
+		search = new ParallelSearch(threads, hash);
+	}
+
+	/**
+	 * Reads and carries out commands until quit or the end of the input.
+	 */
+	public void run(BufferedReader in) throws IOException{
+		while((line = in.readLine()) != null){
+			index = 0;
+			String command = next();
+			if(command == null)
+				continue;
+			if(command.equals("quit"))
+				break;
+
+			if(command.equals("uci")){
+				send("id name " + NAME + "\nid author " + AUTHOR
+						+ "\noption name Threads type spin default " + DEFAULT_THREADS + " min 1 max " + MAX_THREADS
+						+ "\noption name Hash type spin default " + DEFAULT_HASH + " min 1 max " + MAX_HASH
+						+ "\noption name TablebasePath type string default <empty>"
+						+ "\nuciok");
+			}
+			else if(command.equals("isready"))
+				send("readyok");
+			else if(command.equals("stop")){
+				search.stop();
+				release.countDown();
+			}
+			else if(command.equals("ucinewgame")){
+				waitForSearch();
+				search.clear();
+			}
+			else if(command.equals("position")){
+				waitForSearch();
+				position();
+			}
+			else if(command.equals("go")){
+				waitForSearch();
+				go();
+			}
+			else if(command.equals("setoption")){
+				waitForSearch();
+				setOption();
+			}
+		}
+		search.stop();
+		waitForSearch();
+		search.shutdown();
+	}
+
+	/**
+	 * Sets the game up from "startpos" or "fen ..." and plays the moves after "moves".
+	 */
+	private void position(){
+		String token = next();
+		if("fen".equals(token)){
+			StringBuilder fen = new StringBuilder(90);
+			for(token = next(); token != null && !token.equals("moves"); token = next())
+				fen.append(token).append(' ');
+			try{
+				game.setUp(fen);
+			}catch(IllegalArgumentException e){
+				send("info string " + e.getMessage());
+				game.reset();
+				return;
+			}
+		}
+		else{
+			game.reset();
+			token = next();
+		}
+
+		if(!"moves".equals(token))
+			return;
+		for(token = next(); token != null; token = next()){
+			int move = Move.parse(token, 0, token.length(), game.getPosition(), moves);
+			if(!game.move(move)){
+				send("info string illegal move " + token);
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Works out the depth and time limits and starts the search on its own thread, which
+	 * sends bestmove when it is done.  The stop flag is cleared here, before the thread
+	 * starts, so a stop which arrives first still ends the search at once.
+	 */
+	private void go(){
+		int depth = Search.MAX_DEPTH;
+		long movetime = 0, time = 0, increment = 0;
+		int movesToGo = 0;
+		boolean infinite = false;
+		boolean white = game.getPosition().getSideToMove() == Position.WHITE;
+		for(String token = next(); token != null; token = next()){
+			if(token.equals("depth"))
+				depth = (int) number(depth);
+			else if(token.equals("movetime"))
+				movetime = number(0);
+			else if(token.equals(white ? "wtime" : "btime"))
+				time = number(0);
+			else if(token.equals(white ? "winc" : "binc"))
+				increment = number(0);
+			else if(token.equals("movestogo"))
+				movesToGo = (int) number(0);
+			else if(token.equals("infinite"))
+				infinite = true;
+		}
+
+		// Spend an even share of the clock, keeping back a margin so the flag never falls
+		long millis = movetime;
+		if(millis <= 0 && time > 0){
+			millis = time / (movesToGo > 0 ? movesToGo + 1 : 30) + increment * 3 / 4;
+			millis = Math.max(1, Math.min(millis, time - MOVE_OVERHEAD));
+		}
+
+		final int maxDepth = Math.max(1, depth);
+		final long limit = infinite ? 0 : millis;
+		final CountDownLatch held = new CountDownLatch(infinite ? 1 : 0);
+		release = held;
+		search.clearStop();
+		searching = new Thread(new Runnable(){
+			public void run(){
+				int move = search.searchUnlessStopped(game.getPosition(), maxDepth, limit);
+				try{
+					held.await();
+				}catch(InterruptedException e){
+					Thread.currentThread().interrupt();
+				}
+				send("info depth " + search.getDepth() + " score " + score(search.getScore())
+						+ " nodes " + search.getNodes() + " nps " + search.getNodesPerSecond()
+						+ " time " + search.getElapsedMillis() + String.format("\ninfo string pawn hash hit rate %.1f%%",
+						search.getPawnHitRate() * 100) + "\nbestmove " + Move.toString(move));
+			}
+		}, "uci-search");
+		searching.start();
+	}
+
+	/**
+	 * Reads "name Threads value n" or "name Hash value n" and rebuilds the engine, or
+	 * "name TablebasePath value directory" and opens the endgame tables there.
+	 */
+	private void setOption(){
+		String name = null, value = null;
+		for(String token = next(); token != null; token = next()){
+			if(token.equals("name"))
+				name = next();
+			else if(token.equals("value")){
+				value = line.substring(index).trim();
+				break;
+			}
+		}
+		if(name == null || value == null)
+			return;
+		if(name.equalsIgnoreCase("TablebasePath")){
+			openTablebases(value);
+			return;
+		}
+		long number = number(value, -1);
+		if(number < 1)
+			return;
+		if(name.equalsIgnoreCase("Threads"))
+			threads = (int) Math.min(number, MAX_THREADS);
+		else if(name.equalsIgnoreCase("Hash"))
+			hash = (int) Math.min(number, MAX_HASH);
+		else
+			return;
+		search.shutdown();
+		search = new ParallelSearch(threads, hash);
+		search.setTablebases(tablebases);
+	}
+
+	/**
+	 * Opens the endgame tables in the directory, or closes them for an empty one.
+	 */
+	private void openTablebases(String directory){
+		try{
+			if(tablebases != null)
+				tablebases.close();
+			tablebases = null;
+			if(!directory.isEmpty() && !directory.equals("<empty>"))
+				tablebases = new Tablebases(Paths.get(directory));
+		}catch(IOException e){
+			send("info string could not open tablebases: " + e);
+		}
+		search.setTablebases(tablebases);
+	}
+
+	/**
+	 * Returns a search score in UCI form: "cp" and centipawns, or "mate" and moves, which
+	 * is "mate 0" when the side to move is already mated.
+	 */
+	private static String score(int score){
+		if(score >= Search.MATE_BOUND)
+			return "mate " + (Search.MATE - score + 1) / 2;
+		if(score <= -Search.MATE_BOUND){
+			int moves = (Search.MATE + score) / 2;
+			return moves == 0 ? "mate 0" : "mate -" + moves;
+		}
+		return "cp " + score;
+	}
+
+	/**
+	 * Returns the next token of the line, or null at its end.
+	 */
+	private String next(){
+		while(index < line.length() && Character.isWhitespace(line.charAt(index)))
+			index++;
+		if(index == line.length())
+			return null;
+		int start = index;
+		while(index < line.length() && !Character.isWhitespace(line.charAt(index)))
+			index++;
+		return line.substring(start, index);
+	}
+
+	/**
+	 * Reads the next token as a number, or returns the default if it is not one.
+	 */
+	private long number(long defaultValue){
+		return number(next(), defaultValue);
+	}
+
+	/**
+	 * Returns the token as a number, or the default if it is not one.
+	 */
+	private static long number(String token, long defaultValue){
+		if(token == null || token.isEmpty())
+			return defaultValue;
+		long value = 0;
+		int i = token.charAt(0) == '-' ? 1 : 0;
+		if(i == token.length())
+			return defaultValue;
+		for(; i<token.length(); i++){
+			char c = token.charAt(i);
+			if(c < '0' || c > '9')
+				return defaultValue;
+			value = value*10 + c - '0';
+		}
+		return token.charAt(0) == '-' ? -value : value;
+	}
+
+	/**
+	 * Waits until the running search, if any, has sent its move.  A "go infinite" search is
+	 * stopped first, since it would otherwise never end.
+	 */
+	private void waitForSearch(){
+		if(searching == null)
+			return;
+		if(release.getCount() > 0){
+			search.stop();
+			release.countDown();
+		}
+		try{
+			searching.join();
+		}catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+		}
+		searching = null;
+	}
+
+	/**
+	 * Writes the text and a line end and flushes them to the GUI.
+	 */
+	private void send(String text){
+		synchronized(out){
+			try{
+				out.write(text);
+				out.write('\n');
+				out.flush();
+			}catch(IOException e){
+				// The GUI has gone; the next read will see the end of the input
+			}
+		}
+	}
+
+	/**
+	 * Runs the command loop on standard input and output.
+	 */
+	public static void main(String[] args) throws IOException{
+		BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.US_ASCII));
+		Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.US_ASCII), 1 << 14);
+		new Uci(out).run(in);
+	}
+
+}  // End Uci
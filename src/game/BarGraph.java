@@ -2,6 +2,7 @@ package game;
 import java.awt.Color;
 import java.awt.Graphics;
 import java.awt.Polygon;
+import java.awt.Rectangle;
 
 /** 
  * By: Alex Sotis
@@ -15,12 +16,18 @@ public class BarGraph {
 	private int score, x, y;
 	private final int BAR_WIDTH = 8, BAR_HEIGHT = 15;
 
+	// The center marker, built once since the graph never moves
+	private final Polygon marker = new Polygon();
+
 	// Constructor takes the score and the location in the window as parameters
 	public BarGraph(int theScore, int theX, int theY){
 		score = theScore;
 		x = theX;
 		y = theY;
 
+		marker.addPoint(x, y);
+		marker.addPoint(x + 5, y - 8);
+		marker.addPoint(x - 5, y - 8);
 	}
 
 	/**
@@ -31,10 +38,6 @@ public class BarGraph {
 
 		//First, the center marker is drawn as a triangle to show where the bar starts
 		pane.setColor(Color.BLUE);
-		Polygon marker = new Polygon();
-		marker.addPoint(x, y);
-		marker.addPoint(x + 5, y - 8);
-		marker.addPoint(x - 5, y - 8);
 		pane.fillPolygon(marker);
 
 		// change color to cyan
@@ -50,6 +53,14 @@ public class BarGraph {
 		}	
 	}
 
+	/**
+	 * Returns the strip of a window of the given width that the graph can be drawn in,
+	 * whatever the score.
+	 */
+	public Rectangle getArea(int windowWidth){
+		return new Rectangle(0, y - 8, windowWidth, BAR_HEIGHT + 8);
+	}
+
 	/**
 	 * This method just updates the score
 	 */
@@ -3,16 +3,26 @@ import java.awt.*;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.Scanner;
+import java.util.function.IntConsumer;
 
+import book.OpeningBook;
+import engine.Search;
+import engine.TranspositionTable;
 import pieces.Piece;
+import rules.Bitboards;
+import rules.Move;
+import rules.Position;
 
 /**
- * The Board class is the main class which hold all of the information about the
- * players and the pieces.  It will detect mouse clicks to see if the user has
- * made a legal move, and will also alternate whose turn it is.  This class will
- * also be responsible for drawing everything to the graphics window.  Board has-a
- * array of spot objects (64 of them) and 2 Player objects.  
+ * The Board class is the window of a game.  It will detect mouse clicks and pass
+ * them on to its Game, which holds all of the information about the players and
+ * the pieces, decides if the user has made a legal move and alternates whose turn
+ * it is.  This class is responsible for drawing everything to the graphics window.
+ * Board has-a array of spot objects (64 of them) and a Game object.
  */
 public class Board extends Frame implements MouseListener{
 
@@ -27,10 +37,9 @@ public class Board extends Frame implements MouseListener{
 	private int oldX, oldY;
 
 	/**
-	 * The players of the game.
+	 * The game shown in the window.
 	 */
-	private Player white, black;
-
+	private Game game;
 	
 	/**
 	 * An array of Spot objects in order to draw the board and detect mouse clicks.
@@ -38,10 +47,20 @@ public class Board extends Frame implements MouseListener{
 	private Spot[][] spots = new Spot[8][8];
 
 	/**
-	 * A boolean which will be negated after each valid move so only the next player
-	 * can move.
+	 * The empty board, drawn once from the spots.
+	 */
+	private BufferedImage background;
+
+	/**
+	 * The off-screen image each frame is drawn into before it is copied to the window,
+	 * so a half drawn frame is never seen.
+	 */
+	private Image backBuffer;
+
+	/**
+	 * The color of every spot before the current mouse click, to find the spots it changed.
 	 */
-	private boolean whiteToMove = true;
+	private Color[][] spotColors = new Color[8][8];
 
 	/**
 	 * The window dimensions.
@@ -53,6 +72,11 @@ public class Board extends Frame implements MouseListener{
 	 */
 	private UneFenetre myWindow;	
 
+	/**
+	 * The legal moves of the side to move, generated once per turn.
+	 */
+	private final LegalMoves legalMoves = new LegalMoves();
+
 	/**
 	 * A boolean to check if the square clicked should be considered for a legal move.
 	 */
@@ -62,19 +86,50 @@ public class Board extends Frame implements MouseListener{
 	 * A graph to represent the material difference of the players.
 	 */
 	private BarGraph scoreGraph;
-	
-	
+
 	/**
-	 * The material difference of the players.
+	 * The engine, or null if two people are playing.
 	 */
-	private int score = 0;
+	private Search engine;
 
 	/**
-	 * The constructor uses the helper method initializeBoard() to instantiate 64 Spot 
-	 * objects and 2 Player objects, and then sets up the window to draw the game on.
+	 * The color the engine plays and how many milliseconds it may think per move.
+	 */
+	private int engineColor;
+	private long engineMillis;
+
+	/**
+	 * Runs the engine away from the event thread.
+	 */
+	private MoveWorker worker = new MoveWorker(null);
+
+	/**
+	 * Plays a move handed back by the worker and repaints what it changed.
+	 */
+	private final IntConsumer playMove = new IntConsumer(){
+		public void accept(int move){
+			rememberSpots();
+			update(move);
+			if(engineToMove())
+				playEngineMove();
+			repaintChangedSpots();
+		}
+	};
+
+	/**
+	 * The constructor starts a new Game and shows it in a window.
 	 */
 	public Board(){
+		this(new Game());
+	}
+
+	/**
+	 * The constructor uses the helper method initializeBoard() to instantiate 64 Spot 
+	 * objects for the given game, and then sets up the window to draw the game on.
+	 */
+	public Board(Game game){
 
+		this.game = game;
 		initializeBoard();
 
 		myWindow = new UneFenetre();  			//to allow for window closing
@@ -88,9 +143,34 @@ public class Board extends Frame implements MouseListener{
 
 	}
 
+	/**
+	 * This constructor sets up a game against the engine, which plays the given color
+	 * (Position.WHITE or Position.BLACK) and thinks for the given time on each move.
+	 */
+	public Board(int engineColor, long engineMillis){
+		this(engineColor, engineMillis, null);
+	}
+
+	/**
+	 * The same as the constructor above, with the engine playing from the opening book
+	 * while the game is in it.  The book may be null.
+	 */
+	public Board(int engineColor, long engineMillis, OpeningBook book){
+		this();
+		this.engineColor = engineColor;
+		this.engineMillis = engineMillis;
+		engine = new Search(new TranspositionTable(64));
+		worker = new MoveWorker(engine);
+		worker.setBook(book);
+
+		if(engineColor == Position.WHITE)
+			playEngineMove();
+	}
+
 	/**
 	 * This method will be called in the constructor of Board.  Its purpose is to 
-	 * fill the array spots with 64 Spot objects and instantiate both players.
+	 * fill the array spots with 64 Spot objects, draw them once into the background
+	 * image and create the score graph.
 	 */
 	private void initializeBoard(){
 
@@ -99,123 +179,277 @@ public class Board extends Frame implements MouseListener{
 				spots[i][j] = new Spot(i+1, j+1);
 			}
 		}
+		background = Sprites.board(spots);
 		
-		white = new Player(true);
-		black = new Player(false);
-		
-		scoreGraph = new BarGraph(score, windowWidth/2,  windowHeight - 60);
+		scoreGraph = new BarGraph(game.getScore(), windowWidth/2,  windowHeight - 60);
+	}
+
+	/**
+	 * AWT calls update() for a repaint() and by default it first clears the window, which
+	 * makes it flicker.  Every pixel is drawn by paint() anyway, so the clearing is skipped.
+	 */
+	public void update(Graphics pane){
+		paint(pane);
 	}
 
 	/**
-	 * Cycles through each Spot object in the array spots and draws them, then
-	 * has each player draw their pieces.
+	 * Draws the part of the window inside the clip into the back buffer, then copies
+	 * that part of the back buffer to the window.
 	 */
 	public void paint(Graphics pane){
+		if((backBuffer == null) || (backBuffer.getWidth(null) != getWidth())
+				|| (backBuffer.getHeight(null) != getHeight()))
+			backBuffer = createImage(getWidth(), getHeight());
+
+		Rectangle clip = pane.getClipBounds();
+		if(clip == null)
+			clip = new Rectangle(0, 0, getWidth(), getHeight());
+		Graphics buffer = backBuffer.getGraphics();
+		buffer.setClip(clip);
+		buffer.setColor(getBackground());
+		buffer.fillRect(clip.x, clip.y, clip.width, clip.height);
+		drawFrame(buffer);
+		buffer.dispose();
+
+		pane.drawImage(backBuffer, 0, 0, null);
+	}
+
+	/**
+	 * Copies the empty board and draws over it only the spots which are selected
+	 * or red, then copies each player's piece sprites.
+	 */
+	private void drawFrame(Graphics pane){
 
+		pane.drawImage(background, Sprites.SQUARE_SIZE, Sprites.SQUARE_SIZE, null);
 		for(int i=0; i<spots.length; i++){
 			for(int j=0; j<spots.length; j++){
-				spots[i][j].drawSpot(pane);
+				if(spots[i][j].isHighlighted())
+					spots[i][j].drawSpot(pane);
 			}
 		}
 		
-		white.drawPieces(pane);
-		black.drawPieces(pane);
+		drawPieces(pane, game.getWhite());
+		drawPieces(pane, game.getBlack());
 		
 		scoreGraph.drawBarGraph(pane);
 	}
 
+	/**
+	 * Draws the sprite of each piece of a player which is still alive.
+	 */
+	private void drawPieces(Graphics pane, Player player){
+
+		for(Piece piece: player.getPieces()){
+			if(piece != null)
+				pane.drawImage(Sprites.of(piece), piece.getX()*Sprites.SQUARE_SIZE,
+						piece.getY()*Sprites.SQUARE_SIZE, null);
+		}
+	}
+
 
 
 	/**
 	 * Given the coordinates of the mouse click, first check if the click was
-	 * inside a spot. If the user did click a square, select that square,
-	 * unselect all of the other squares, and pass the selected square's 
-	 * coordinates along with the coordinates of the last selected square
-	 * to the update() method which will check if the move is legal.
+	 * inside a spot. If the user did click a square, select that square and
+	 * unselect all of the other squares.  The selected square and the last
+	 * selected square are looked up in the legal moves of the turn, and the move
+	 * found is played through update().  Otherwise the squares the piece on the
+	 * selected square can move to are highlighted.  A thinking engine is told to
+	 * move now.  Only the spots the click changed are repainted.
 	 */
 	public void mouseReleased(MouseEvent event) {
 		
+		worker.cancel();
+		rememberSpots();
 		clickX = event.getX();
 		clickY = event.getY();
+		int clickedX = -1, clickedY = -1;
 		for(int i=0; i<spots.length; i++){
 			for(int j=0; j<spots.length; j++){
 				spots[i][j].unselect(false);
 				if(spots[i][j].isInside(clickX, clickY)){
-					spots[i][j].select();
-					if(readyToMove)
-						update(i+1,j+1, oldX+1, oldY+1);
-					oldX = i;
-					oldY = j;
-					readyToMove = true;
-				}			
+					clickedX = i;
+					clickedY = j;
+				}
 			}
 		}
 
-		repaint();
-	}
+		if(clickedX >= 0){
+			spots[clickedX][clickedY].select();
+			boolean moved = false;
+			if(!engineToMove()){
+				legalMoves.update(game.getPosition());
+				int to = Bitboards.square(clickedX+1, clickedY+1);
+				if(readyToMove){
+					update(legalMoves.find(Bitboards.square(oldX+1, oldY+1), to));
+					moved = !readyToMove;
+					if(moved && engineToMove())
+						playEngineMove();
+				}
+				if(!moved)
+					showDestinations(to);
+			}
+			if(!moved){
+				oldX = clickedX;
+				oldY = clickedY;
+				readyToMove = true;
+			}
+		}
 
+		repaintChangedSpots();
+	}
 
+	/**
+	 * Highlights the spots the piece on a square of the bitboard position can move to.
+	 */
+	private void showDestinations(int from){
+		for(long targets = legalMoves.getDestinations(from); targets != 0; targets &= targets - 1){
+			int to = Bitboards.first(targets);
+			spots[Bitboards.xOf(to) - 1][Bitboards.yOf(to) - 1].showDestination();
+		}
+	}
 
 	/**
-	 * Given 2 coordinate pairs, check if the player (whose turn it is), has
-	 * a legal move from the 2nd coordinate pair to the 1st coordinate pair.
-	 * If the move was made, have the other player check to see if their
-	 * piece was taken.  Then toggle the value of whiteToMove and set
-	 * readyToMove to be false.
+	 * Stores the color of every spot, for repaintChangedSpots().
 	 */
-	public void update(int newX, int newY, int theOldX, int theOldY){
-		boolean moved = false, inCheck = false;
-		Piece[] opponentPieces;
+	private void rememberSpots(){
+		for(int i=0; i<spots.length; i++)
+			for(int j=0; j<spots.length; j++)
+				spotColors[i][j] = spots[i][j].getColor();
+	}
 
-		if(whiteToMove){			// If it is white's move
-			opponentPieces = black.getPieces(); 
-			moved = white.checkMove(newX, newY, theOldX, theOldY, opponentPieces);
-			inCheck = white.kingInCheck(opponentPieces, newX, newY);
+	/**
+	 * Repaints each spot whose color changed since rememberSpots().
+	 */
+	private void repaintChangedSpots(){
+		for(int i=0; i<spots.length; i++)
+			for(int j=0; j<spots.length; j++)
+				if(spots[i][j].getColor() != spotColors[i][j])
+					repaintArea(spots[i][j].getArea());
+	}
 
-		}else{						// If it is black's move
-			opponentPieces = white.getPieces();
-			moved = black.checkMove(newX, newY, theOldX, theOldY, opponentPieces);
-			inCheck = black.kingInCheck(opponentPieces, newX, newY);
+	/**
+	 * Repaints the squares a move changed: where the piece left and landed, the pawn
+	 * taken en passant and the rook of a castling move.  The score graph is repainted too.
+	 */
+	private void repaintMove(int move){
+		int from = Move.from(move), to = Move.to(move);
+		repaintSquare(from);
+		repaintSquare(to);
+		if(Move.flags(move) == Move.EN_PASSANT)
+			repaintSquare((from & ~7) | (to & 7));
+		else if(Move.flags(move) == Move.KING_CASTLE){
+			repaintSquare(to + 1);
+			repaintSquare(to - 1);
+		}
+		else if(Move.flags(move) == Move.QUEEN_CASTLE){
+			repaintSquare(to - 2);
+			repaintSquare(to + 1);
 		}
-		if(moved){
-			spots[theOldX-1][theOldY-1].unselect(true);
-			if(whiteToMove){
-				black.checkPieceDied(newX, newY);
-				white.checkPawnPromotion(newX, newY);
-				spots[white.getKingCoordX() - 1][white.getKingCoordY() - 1].unselect(true);
+		repaintArea(scoreGraph.getArea(windowWidth));
+	}
 
-			}
-			else{
-				white.checkPieceDied(newX, newY);
-				black.checkPawnPromotion(newX, newY);
-				spots[black.getKingCoordX() - 1][black.getKingCoordY() - 1].unselect(true);
+	/**
+	 * Repaints the spot of a square of the bitboard position.
+	 */
+	private void repaintSquare(int square){
+		repaintArea(spots[Bitboards.xOf(square) - 1][Bitboards.yOf(square) - 1].getArea());
+	}
+
+	/**
+	 * Asks AWT to repaint only the rectangle of the window.
+	 */
+	private void repaintArea(Rectangle area){
+		repaint(area.x, area.y, area.width, area.height);
+	}
 
+	/**
+	 * Returns true if an engine is playing and it is its turn.
+	 */
+	private boolean engineToMove(){
+		return (engine != null) && (game.getPosition().getSideToMove() == engineColor);
+	}
 
+	/**
+	 * Has the worker run the engine on the position and plays its move through update(), the
+	 * same way a player's move is played.  The move, and the search result and speed, are
+	 * shown in the window's title.
+	 */
+	private void playEngineMove(){
+		if(worker.isThinking())
+			return;
+		worker.think(game.getPosition(), engineMillis, new IntConsumer(){
+			public void accept(int move){
+				if(move == Move.NONE)
+					return;
+				if(worker.isBookMove())
+					setTitle("Engine played " + Move.toString(move) + " from the book");
+				else
+					setTitle("Engine played " + Move.toString(move) + " (depth " + engine.getDepth()
+							+ ", score " + engine.getScore() + ", " + engine.getNodesPerSecond() + " nodes/s)");
+				playMove.accept(move);
 			}
+		});
+	}
+
 
-			whiteToMove = !whiteToMove;
+
+	/**
+	 * Given a move encoded by the Move class, or Move.NONE, have the game play it for
+	 * the player whose turn it is if it is one of the legal moves of the turn.  If the
+	 * move was made, clear the highlighted squares and set readyToMove to be false;
+	 * otherwise show the king's square in red if it is in check.
+	 */
+	public void update(int move){
+		Player mover = game.getPlayerToMove();
+
+		legalMoves.update(game.getPosition());
+		if(legalMoves.contains(move)){
+			game.play(move);
+			repaintMove(move);
+			int from = Move.from(move);
+			spots[Bitboards.xOf(from)-1][Bitboards.yOf(from)-1].unselect(true);
+			spots[mover.getKingCoordX() - 1][mover.getKingCoordY() - 1].unselect(true);
 			readyToMove = false;
 		}
-		else{
-			if((inCheck) && (whiteToMove)){
-				spots[white.getKingCoordX() - 1][white.getKingCoordY() - 1].setSquareRed();
-			}
-			else if((inCheck) && (!whiteToMove)){
-				spots[black.getKingCoordX() - 1][black.getKingCoordY() - 1].setSquareRed();
-			}
+		else if(mover.kingInCheck()){
+			spots[mover.getKingCoordX() - 1][mover.getKingCoordY() - 1].setSquareRed();
 		}
 
-		score = white.getMaterialValue() - black.getMaterialValue();
-		scoreGraph.update(score);
+		scoreGraph.update(game.getScore());
 
 	}
 
 
 	/**
-	 * Main method will create a new Board object.
+	 * Main method will create a new Board object.  With no arguments two people play;
+	 * "white" or "black" has the engine play that color, optionally followed by its
+	 * thinking time per move in milliseconds and the file of an opening book.  "fen"
+	 * followed by the fields of a FEN has two people play on from that position.
 	 */
 	public static void main(String[] args) {
-		Board playSomeChess = new Board();   // start playing the game
+		if(args.length == 0){
+			Board playSomeChess = new Board();   // start playing the game
+		}
+		else if(args[0].equalsIgnoreCase("fen")){
+			StringBuilder fen = new StringBuilder();
+			for(int i=1; i<args.length; i++)
+				fen.append(args[i]).append(' ');
+			Board playFromFen = new Board(new Game(fen));
+		}
+		else{
+			int engineColor = args[0].equalsIgnoreCase("white") ? Position.WHITE : Position.BLACK;
+			long millis = args.length > 1 ? Long.parseLong(args[1]) : 1000;
+			OpeningBook book = null;
+			if(args.length > 2){
+				try{
+					book = new OpeningBook(Paths.get(args[2]));
+				}catch(IOException e){
+					System.err.println("Playing without a book, could not open " + args[2] + ": " + e);
+				}
+			}
+			Board playTheEngine = new Board(engineColor, millis, book);
+		}
 	}
 
 	/**
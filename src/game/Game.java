@@ -0,0 +1,250 @@
+package game;
+
+import java.nio.ByteBuffer;
+
+import rules.Bitboards;
+import rules.Fen;
+import rules.Move;
+import rules.MoveGenerator;
+import rules.MoveList;
+import rules.Position;
+
+/**
+ * The Game class is the state of one game of chess without any window: the bitboard position,
+ * the 2 Player objects and whose turn it is.  It applies moves for the player whose turn it is
+ * and keeps the score and the moves played so far, encoded by the Move class.  The Board
+ * class is a view over a Game, but a Game can also be created and played on its own, for
+ * example many at once on a server running with java.awt.headless=true.
+ */
+public class Game {
+
+	/**
+	 * The bitboard position both players move their pieces on.
+	 */
+	private Position position;
+
+	/**
+	 * The players of the game.
+	 */
+	private Player white, black;
+
+	/**
+	 * A boolean which will be negated after each valid move so only the next player
+	 * can move.
+	 */
+	private boolean whiteToMove = true;
+
+	/**
+	 * The material difference of the players.
+	 */
+	private int score = 0;
+
+	/**
+	 * The moves played since the game was started or set up.
+	 */
+	private final MoveList history = new MoveList();
+
+	/**
+	 * The buffer the legal moves of the position are generated into.
+	 */
+	private final int[] legalMoves = new int[MoveGenerator.MAX_MOVES];
+
+	/**
+	 * The constructor sets up a new game from the starting position.
+	 */
+	public Game(){
+		position = new Position();
+		white = new Player(true, position);
+		black = new Player(false, position);
+	}
+
+	/**
+	 * The constructor sets up a new game from a position in Forsyth-Edwards Notation.
+	 * Throws an IllegalArgumentException if the FEN is malformed.
+	 */
+	public Game(CharSequence fen){
+		this();
+		setUp(fen);
+	}
+
+	/**
+	 * Sets the game up from a position in Forsyth-Edwards Notation, including the side to
+	 * move, castling rights, en passant square and move counters.  The players rebuild their
+	 * pieces from the position.  Throws an IllegalArgumentException if the FEN is malformed.
+	 */
+	public void setUp(CharSequence fen){
+		Fen.parse(fen, position);
+		loadPlayers();
+	}
+
+	/**
+	 * The same as setUp() above, reading the FEN from a buffer as Fen.parse() does.
+	 */
+	public void setUp(ByteBuffer fen){
+		Fen.parse(fen, position);
+		loadPlayers();
+	}
+
+	/**
+	 * Returns the position of the game in Forsyth-Edwards Notation.
+	 */
+	public String toFen(){
+		return Fen.toString(position);
+	}
+
+	/**
+	 * Has both players rebuild their pieces from a newly set up position.
+	 */
+	private void loadPlayers(){
+		for(int color=Position.WHITE; color<=Position.BLACK; color++)
+			if(Long.bitCount(position.getPieces(color, Position.KING)) != 1)
+				throw new IllegalArgumentException("A FEN position needs one king of each color");
+		white.loadPieces();
+		black.loadPieces();
+		history.clear();
+		whiteToMove = position.getSideToMove() == Position.WHITE;
+		score = white.getMaterialValue() - black.getMaterialValue();
+	}
+
+	/**
+	 * Sets the game back to the starting position, reusing the position, so a program
+	 * replaying many games one after the other does not need a new Game for each.
+	 */
+	public void reset(){
+		position.clear();
+		white = new Player(true, position);
+		black = new Player(false, position);
+		history.clear();
+		whiteToMove = true;
+		score = 0;
+	}
+
+	/**
+	 * Given 2 coordinate pairs, check if the player (whose turn it is), has
+	 * a legal move from the 2nd coordinate pair to the 1st coordinate pair.
+	 * If the move was made, have the other player check to see if their
+	 * piece was taken, then toggle whose turn it is.  Returns true if the
+	 * move was made.
+	 */
+	public boolean move(int newX, int newY, int theOldX, int theOldY){
+		return move(newX, newY, theOldX, theOldY, Position.QUEEN);
+	}
+
+	/**
+	 * The same as move() above, but a pawn reaching the last row becomes a piece of the
+	 * given Position type.
+	 */
+	public boolean move(int newX, int newY, int theOldX, int theOldY, int promotionType){
+		Player mover = whiteToMove ? white : black;
+		Player opponent = whiteToMove ? black : white;
+
+		boolean moved = mover.checkMove(newX, newY, theOldX, theOldY, promotionType);
+		if(moved)
+			finishMove(opponent);
+
+		score = white.getMaterialValue() - black.getMaterialValue();
+		return moved;
+	}
+
+	/**
+	 * Plays a move already known to be one of the legal moves of the position, such as one
+	 * looked up in the Board's LegalMoves, without generating the moves again.
+	 */
+	void play(int move){
+		Player opponent = whiteToMove ? black : white;
+		getPlayerToMove().play(move);
+		finishMove(opponent);
+		score = white.getMaterialValue() - black.getMaterialValue();
+	}
+
+	/**
+	 * After the player whose turn it was made a move on the position, has the opponent
+	 * take its captured piece off the board, records the move and toggles whose turn it is.
+	 */
+	private void finishMove(Player opponent){
+		int move = position.getLastMove();
+		int from = Move.from(move), to = Move.to(move);
+		opponent.checkPieceDied(Bitboards.xOf(to), Bitboards.yOf(to));
+		if(Move.flags(move) == Move.EN_PASSANT)
+			opponent.checkPieceDied(Bitboards.xOf(to), Bitboards.yOf(from));
+		history.add(move);
+		whiteToMove = !whiteToMove;
+	}
+
+	/**
+	 * Plays a move encoded by the Move class through the same rules as a click on the board.
+	 * Returns true if the move was made.
+	 */
+	public boolean move(int move){
+		if(move == Move.NONE)
+			return false;
+		int from = Move.from(move), to = Move.to(move);
+		int promotionType = Move.isPromotion(move) ? Move.promotionType(move) : Position.QUEEN;
+		return move(Bitboards.xOf(to), Bitboards.yOf(to), Bitboards.xOf(from), Bitboards.yOf(from), promotionType);
+	}
+
+	/**
+	 * Returns true if the side to move has no legal move.  Whether that is checkmate or
+	 * stalemate is told by isInCheck().
+	 */
+	public boolean isOver(){
+		return !MoveGenerator.hasLegalMove(position, legalMoves);
+	}
+
+	/**
+	 * Returns the moves played since the game was started or set up.
+	 */
+	public MoveList getHistory(){
+		return history;
+	}
+
+	/**
+	 * Returns true if the king of the player whose turn it is is in check.
+	 */
+	public boolean isInCheck(){
+		return getPlayerToMove().kingInCheck();
+	}
+
+	/**
+	 * Returns true if it is white's turn.
+	 */
+	public boolean isWhiteToMove(){
+		return whiteToMove;
+	}
+
+	/**
+	 * Returns the player whose turn it is.
+	 */
+	public Player getPlayerToMove(){
+		return whiteToMove ? white : black;
+	}
+
+	/**
+	 * Returns the white player.
+	 */
+	public Player getWhite(){
+		return white;
+	}
+
+	/**
+	 * Returns the black player.
+	 */
+	public Player getBlack(){
+		return black;
+	}
+
+	/**
+	 * Returns the bitboard position of the game.
+	 */
+	public Position getPosition(){
+		return position;
+	}
+
+	/**
+	 * Returns the material difference of the players, positive if white is ahead.
+	 */
+	public int getScore(){
+		return score;
+	}
+
+}  // End Game
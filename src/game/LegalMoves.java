@@ -0,0 +1,101 @@
+package game;
+
+import rules.Move;
+import rules.MoveGenerator;
+import rules.Position;
+
+/**
+ * The LegalMoves class keeps the legal moves of the side to move, generated once per turn and
+ * filed by the square they start from.  The Board asks it which squares a clicked piece can
+ * go to, to highlight them, and which move a second click stands for, and both answers are a
+ * table lookup.  The Board plays only moves found here.  The moves are generated again only
+ * when the position's Zobrist key changes, so clicking around on the same turn never repeats
+ * the legality work.
+ *
+ * A pawn reaching the last row is filed under its promotion to a queen, as a click on the
+ * board has always promoted.
+ */
+public class LegalMoves {
+
+	/**
+	 * The legal moves of the position, of which the first count are in use.
+	 */
+	private final int[] moves = new int[MoveGenerator.MAX_MOVES];
+	private int count;
+
+	/**
+	 * For each square, the bitboard of the squares a piece there can move to.
+	 */
+	private final long[] destinations = new long[64];
+
+	/**
+	 * The move from each square to each other square at index from * 64 + to, or Move.NONE.
+	 * Only the entries of the current moves are set, so they are cleared one by one.
+	 */
+	private final short[] byFromTo = new short[64 * 64];
+
+	/**
+	 * The Zobrist key of the position the moves belong to, and whether there is one yet.
+	 */
+	private long key;
+	private boolean filled;
+
+	/**
+	 * Makes sure the moves are those of the position, generating them if the position
+	 * changed since the last call.
+	 */
+	public void update(Position position){
+		if(filled && key == position.getKey())
+			return;
+		for(int i=0; i<count; i++){
+			destinations[Move.from(moves[i])] = 0;
+			byFromTo[Move.from(moves[i]) * 64 + Move.to(moves[i])] = Move.NONE;
+		}
+
+		count = MoveGenerator.generate(position, moves, 0);
+		for(int i=0; i<count; i++){
+			int move = moves[i];
+			if(Move.isPromotion(move) && Move.promotionType(move) != Position.QUEEN)
+				continue;
+			destinations[Move.from(move)] |= 1L << Move.to(move);
+			byFromTo[Move.from(move) * 64 + Move.to(move)] = (short) move;
+		}
+		key = position.getKey();
+		filled = true;
+	}
+
+	/**
+	 * Returns the bitboard of the squares the piece on a square can move to, 0 if it cannot
+	 * move or is not the side to move's.
+	 */
+	public long getDestinations(int from){
+		return destinations[from];
+	}
+
+	/**
+	 * Returns the legal move from one square to another, or Move.NONE if there is none.
+	 */
+	public int find(int from, int to){
+		return byFromTo[from * 64 + to] & 0xFFFF;
+	}
+
+	/**
+	 * Returns true if the move, promotions to any piece included, is one of the legal moves.
+	 */
+	public boolean contains(int move){
+		if(move == Move.NONE)
+			return false;
+		for(int i=0; i<count; i++)
+			if(moves[i] == move)
+				return true;
+		return false;
+	}
+
+	/**
+	 * Returns the number of legal moves, 0 when the game is over.
+	 */
+	public int size(){
+		return count;
+	}
+
+}  // End LegalMoves
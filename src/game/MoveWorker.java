@@ -0,0 +1,156 @@
+package game;
+
+import java.awt.EventQueue;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.IntConsumer;
+
+import book.OpeningBook;
+import engine.Search;
+import rules.Move;
+import rules.MoveGenerator;
+import rules.Position;
+
+/**
+ * The MoveWorker class runs the engine's search for the Board away from the AWT event thread.
+ * Each search works on its own copy of the position, taken on the event thread, so the Game
+ * itself is only ever read and changed on the event thread.  The result is handed back there with
+ * EventQueue.invokeLater().
+ *
+ * Tasks run on virtual threads when the Java version has them, found by reflection so the
+ * project still builds for Java 8, and otherwise on daemon threads of a cached pool.  Every
+ * method must be called on the event thread.
+ */
+public class MoveWorker {
+
+	/**
+	 * The threads the tasks run on.
+	 */
+	private final ExecutorService executor = newExecutor();
+
+	/**
+	 * The engine, or null if two people are playing.
+	 */
+	private final Search engine;
+
+	/**
+	 * True from the start of an engine search until its move has been handed back.
+	 */
+	private boolean thinking;
+
+	/**
+	 * The opening book the engine plays from before it searches, or null, and whether the
+	 * last move handed back came from it.
+	 */
+	private OpeningBook book;
+	private final Random random = new Random();
+	private boolean bookMove;
+
+	/**
+	 * The constructor takes the engine to search with, or null.
+	 */
+	public MoveWorker(Search engine){
+		this.engine = engine;
+	}
+
+	/**
+	 * Sets the opening book the engine looks in before searching, or null for none.
+	 */
+	public void setBook(OpeningBook book){
+		this.book = book;
+	}
+
+	/**
+	 * Has the engine play a move of the book, or else search a copy of the position for at
+	 * most the given time, then hands its move, or Move.NONE, to done on the event thread.
+	 */
+	public void think(Position position, final long millis, final IntConsumer done){
+		final Position copy = copyOf(position);
+		thinking = true;
+		executor.submit(new Runnable(){
+			public void run(){
+				int found = Move.NONE;
+				if(book != null){
+					int[] moves = new int[MoveGenerator.MAX_MOVES];
+					found = book.pick(copy, moves, new int[MoveGenerator.MAX_MOVES], random);
+				}
+				final boolean fromBook = found != Move.NONE;
+				// A search stopped by cancel() may still be unwinding on another thread
+				if(!fromBook){
+					synchronized(engine){
+						found = engine.search(copy, Search.MAX_DEPTH, millis);
+					}
+				}
+				final int move = found;
+				EventQueue.invokeLater(new Runnable(){
+					public void run(){
+						thinking = false;
+						bookMove = fromBook;
+						done.accept(move);
+					}
+				});
+			}
+		});
+	}
+
+	/**
+	 * Asks a thinking engine to play the best move it has found so far.  Called when the
+	 * user clicks.
+	 */
+	public void cancel(){
+		if(thinking)
+			engine.stop();
+	}
+
+	/**
+	 * Returns true if the last move think() handed back came from the opening book.
+	 */
+	public boolean isBookMove(){
+		return bookMove;
+	}
+
+	/**
+	 * Returns true while the engine is searching.
+	 */
+	public boolean isThinking(){
+		return thinking;
+	}
+
+	/**
+	 * Stops the worker's threads for good.
+	 */
+	public void shutdown(){
+		cancel();
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Returns a copy of the position for a task to work on.
+	 */
+	private static Position copyOf(Position position){
+		Position copy = new Position();
+		copy.copyFrom(position);
+		return copy;
+	}
+
+	/**
+	 * Returns an executor starting a virtual thread per task if the Java version has them,
+	 * or else a pool of daemon threads, so a task left running never keeps the program alive.
+	 */
+	private static ExecutorService newExecutor(){
+		try{
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		}catch(ReflectiveOperationException e){
+			return Executors.newCachedThreadPool(new ThreadFactory(){
+				public Thread newThread(Runnable task){
+					Thread thread = new Thread(task, "board-worker");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+	}
+
+}  // End MoveWorker
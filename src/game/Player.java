@@ -1,14 +1,16 @@
 package game;
 
-import java.awt.*;
-
 import pieces.*;
+import rules.Bitboards;
+import rules.Move;
+import rules.MoveGenerator;
+import rules.Position;
 
 /**
- *There will be 2 instances of data members in the Board class, one for white and 
+ *There will be 2 instances of data members in the Game class, one for white and 
  *one for black.  The Player class has-a array of piece objects and a color. Players are
- *able to remove a piece if it has been taken, check if a move is valid for their
- *piece, and draw their pieces to the board.
+ *able to remove a piece if it has been taken and check if a move is valid for their
+ *piece.  The Board draws their pieces.
  */
 public class Player {
 
@@ -18,30 +20,31 @@ public class Player {
 	 */
 	private Piece[] pieces = new Piece[16];
 
-	/**
-	 * The color of the player.  This color will determine the color of their pieces.
-	 */
-	private Color color;
-	
 	/**
 	 * True for the white player, false for the black player.
 	 */
 	private boolean isWhite;
 	
+	/**
+	 * The bitboard position shared by both players.  All legality questions are answered
+	 * from it; the array of pieces is only used to draw them.
+	 */
+	private Position position;
 
+	/**
+	 * The buffer the legal moves of the position are generated into.
+	 */
+	private final int[] legalMoves = new int[MoveGenerator.MAX_MOVES];
 
 
 	/**
 	 * The Constructor sets the player to have a color (white or black) and calls the 
-	 * correct method for initializing the pieces based on the boolean parameter.
+	 * correct method for initializing the pieces based on the boolean parameter.  The
+	 * pieces are also placed on the shared position.
 	 */
-	public Player(boolean isWhite){
+	public Player(boolean isWhite, Position position){
 		this.isWhite = isWhite;
-		if(isWhite)
-			color = Color.white;		
-		else
-			color = Color.black;
-		
+		this.position = position;
 
 		initializePieces();
 	}
@@ -79,6 +82,46 @@ public class Player {
 		pieces[14] = new Queen(5,homeRow, isWhite);
 		pieces[15] = new King(4,homeRow, isWhite);
 		
+		for(Piece piece: pieces)
+			position.put(piece.getSquare(), piece.getColor(), piece.getType());
+	}
+
+	/**
+	 * Rebuilds the array of pieces from this player's pieces on the position, after the
+	 * position has been set up from a FEN.  The king and the rooks on their corners get the
+	 * same places in the array as in initializePieces().
+	 */
+	public void loadPieces(){
+		long own = position.getOccupancy(getColor());
+		int homeRow = isWhite ? 1 : 8;
+		int next = 2;
+
+		pieces = new Piece[Math.max(16, Long.bitCount(own) + 2)];
+		for(long remaining = own; remaining != 0; remaining &= remaining - 1){
+			int square = Bitboards.first(remaining);
+			int type = Position.typeOf(position.getPiece(square));
+			int x = Bitboards.xOf(square), y = Bitboards.yOf(square);
+			int index;
+			if(type == Position.KING)
+				index = 15;
+			else if((type == Position.ROOK) && (y == homeRow) && (x == 8))	// queen side rook
+				index = 0;
+			else if((type == Position.ROOK) && (y == homeRow) && (x == 1))
+				index = 1;
+			else{
+				if(next == 15)
+					next++;
+				index = next++;
+			}
+			pieces[index] = createPiece(type, x, y);
+		}
+	}
+
+	/**
+	 * Returns the Position color index of the player.
+	 */
+	public int getColor(){
+		return isWhite ? Position.WHITE : Position.BLACK;
 	}
 	
 	
@@ -87,19 +130,14 @@ public class Player {
 	 * Returns the material value of all of the player's pieces.
 	 */
 	public int getMaterialValue(){
-		int materialValue = 0;
-		
-		for(Piece piece: pieces){
-			if(piece != null)
-				materialValue += piece.getValue();
-		}
-	return materialValue;	
+		return position.getMaterial(getColor());
 	}
 
 
 	/**
 	 * If an enemy piece has just moved to a square with this
-	 * player's piece on it, remove that piece.
+	 * player's piece on it, remove that piece.  The position has already
+	 * been updated by the enemy's checkMove(), so only the drawn pieces change.
 	 */
 	public void checkPieceDied(int theX, int theY){
 
@@ -111,115 +149,138 @@ public class Player {
 	}
 
 	/**
-	 * Promotes the pawn to a queen if the pawn has made it to the
-	 * other side of the board.
+	 * Creates a drawn piece of this player of the given Position piece type.
 	 */
-	public void checkPawnPromotion(int theX, int theY){
-		
-		for(int i=0; i< pieces.length; i++){
-			if((pieces[i] != null) && (pieces[i].getPromoted()))
-					pieces[i] = new Queen(theX, theY, isWhite);
-			
+	private Piece createPiece(int type, int theX, int theY){
+		switch(type){
+		case Position.PAWN:		return new Pawn(theX, theY, isWhite);
+		case Position.KNIGHT:	return new Knight(theX, theY, isWhite);
+		case Position.BISHOP:	return new Bishop(theX, theY, isWhite);
+		case Position.ROOK:		return new Rook(theX, theY, isWhite);
+		case Position.KING:		return new King(theX, theY, isWhite);
+		default:				return new Queen(theX, theY, isWhite);
 		}
-		checkCastling();
 	}
 	
 	/**
-	 * Called in the checkPawnPromotion method.  This method moves the corresponding
-	 * rook to its proper spot if the king has just castled.
+	 * Given 2 coordinate pairs, decide if a piece on the first coordinate has a
+	 * legal move to the second coordinate.  If so, the move is made on the position
+	 * and the piece moved on the board.  Only the position's legal moves are accepted,
+	 * so a move which would leave the king in check is refused without being tried.
+	 * A captured piece is removed from the position here; the other player removes it
+	 * from the board in checkPieceDied().  A pawn reaching the last row becomes a queen.
 	 */
-	private void checkCastling(){
-		
-		int castled = pieces[15].getCastling();
-		if((castled != 0) && (pieces[0] != null)){
-			if(castled == 1)		// castling king side
-				pieces[1].movePiece(pieces[1].getX() + 2, (pieces[1].getY()));
-			else if(castled == 2)	// castling queen side
-				pieces[0].movePiece(pieces[0].getX() - 3, (pieces[0].getY()));
+	public boolean checkMove(int newX, int newY, int theOldX, int theOldY){
+		return checkMove(newX, newY, theOldX, theOldY, Position.QUEEN);
+	}
+
+	/**
+	 * The same as checkMove() above, but a pawn reaching the last row becomes a piece
+	 * of the given Position type.
+	 */
+	public boolean checkMove(int newX, int newY, int theOldX, int theOldY, int promotionType){
+		int from = Bitboards.square(theOldX, theOldY);
+		int to = Bitboards.square(newX, newY);
+
+		// Quick test on the bitboards before generating the moves
+		if((position.getOccupancy(getColor()) & Bitboards.bit(from)) == 0)
+			return false;
+
+		int move = findLegalMove(from, to, promotionType);
+		if(move == Move.NONE)
+			return false;
+		play(move);
+		return true;
+	}
+
+	/**
+	 * Returns the legal move of the position from one square to another, promoting to
+	 * the given type if it is a promotion, or Move.NONE if there is none.
+	 */
+	private int findLegalMove(int from, int to, int promotionType){
+		int count = MoveGenerator.generate(position, legalMoves, 0);
+		for(int i=0; i<count; i++){
+			int move = legalMoves[i];
+			if((Move.from(move) == from) && (Move.to(move) == to)
+					&& (!Move.isPromotion(move) || (Move.promotionType(move) == promotionType)))
+				return move;
 		}
-		
-			
-		
+		return Move.NONE;
 	}
-	
-	
+
 	/**
-	 * Given 2 coordinate pairs and all of the enemy's pieces, decide if a piece
-	 * on the first coordinate has a legal move to the second coordinate.  If so,
-	 * move the piece to the new square.
-	 */
-	public boolean checkMove(int newX, int newY, int theOldX, int theOldY,
-			Piece[] otherPieces){
-		boolean legal = false;
-		for(Piece piece: pieces){
-			if((piece != null) && ( piece.isOn(theOldX, theOldY)) && 
-					(piece.isLegal(newX, newY, otherPieces, pieces))){
-				legal = true;
-				if(legal){
-					piece.movePiece(newX, newY);
-					
-					if(kingInCheck(otherPieces, newX, newY)){
-						legal = false;
-						piece.movePiece(theOldX, theOldY);
-					}
-				}
-			}
+	 * Makes a legal move of this player on the position and moves the drawn piece.  What
+	 * else changes on the board is taken from the move's flags: a promoted pawn is replaced
+	 * by its new piece and a castling rook is moved beside the king.
+	 */
+	void play(int move){
+		int from = Move.from(move), to = Move.to(move);
+		position.makeMove(move);
+
+		int x = Bitboards.xOf(to), y = Bitboards.yOf(to);
+		int index = indexOf(from);
+		if(index >= 0){
+			if(Move.isPromotion(move))
+				pieces[index] = createPiece(Move.promotionType(move), x, y);
+			else
+				pieces[index].movePiece(x, y);
 		}
-		return legal;
+
+		if(Move.flags(move) == Move.KING_CASTLE)
+			movePiece(to + 1, to - 1);
+		else if(Move.flags(move) == Move.QUEEN_CASTLE)
+			movePiece(to - 2, to + 1);
 	}
-	
-	
+
+	/**
+	 * Moves the drawn piece on one square of the position to another.
+	 */
+	private void movePiece(int from, int to){
+		int index = indexOf(from);
+		if(index >= 0)
+			pieces[index].movePiece(Bitboards.xOf(to), Bitboards.yOf(to));
+	}
+
+	/**
+	 * Returns the index in the array of the drawn piece on a square of the position, or
+	 * -1 if none of this player's pieces is there.
+	 */
+	private int indexOf(int square){
+		int x = Bitboards.xOf(square), y = Bitboards.yOf(square);
+		for(int i=0; i<pieces.length; i++)
+			if((pieces[i] != null) && (pieces[i].isOn(x, y)))
+				return i;
+		return -1;
+	}
+
 	/**
 	 * Returns the X coordinate of the king.
 	 */
 	public int getKingCoordX(){
-		return pieces[15].getX();
+		return Bitboards.xOf(position.getKingSquare(getColor()));
 	}
 	
 	/**
 	 * Returns the Y coordinate of the king.
 	 */
 	public int getKingCoordY(){
-		return pieces[15].getY();
+		return Bitboards.yOf(position.getKingSquare(getColor()));
 	}
 
 	/**
 	 * Returns true if the king is in check.
 	 */
-	public boolean kingInCheck(Piece[] enemyPieces, int someX, int someY){
-		
-		boolean result = false;
-		int kingX = getKingCoordX();
-		int kingY = getKingCoordY();
-		
-		for(Piece piece: enemyPieces){
-			if((piece != null) && (!piece.isOn(someX, someY)) && 
-					(piece.isLegal(kingX, kingY, pieces, enemyPieces)))
-				result = true;			
-		}
-		
-		return result;
+	public boolean kingInCheck(){
+		return position.isInCheck(getColor());
 	}
 
 	
 	/**
-	 * Returns all of the player's pieces.  This will be used by individual
-	 * pieces to check if their move is legal.
+	 * Returns all of the player's pieces.  These are only used to draw the
+	 * pieces; legality is decided from the position.
 	 */
 	public Piece[] getPieces(){
 
 		return pieces;
 	}
-
-	/**
-	 * Draws each piece which is still alive.
-	 */
-	public void drawPieces(Graphics pane){
-
-		for(Piece piece: pieces){
-			pane.setColor(color);
-			if(piece != null)
-				piece.drawPiece(pane);
-		}
-	}
 }  // end Player
\ No newline at end of file
@@ -23,6 +23,15 @@ public class Spot {
 	 */
 	private final int BOX_SIZE = 50;
 
+	/**
+	 * The colors of the light and dark squares, of a selected square, of a square the
+	 * selected piece can move to and of the square of a king in check.  They are made once
+	 * and shared by every spot.
+	 */
+	private static final Color LIGHT = new Color(230, 230, 230), DARK = new Color(0, 200, 200),
+			SELECTED = new Color(250, 250, 100), DESTINATION = new Color(150, 220, 120),
+			CHECK = new Color(200, 0, 0);
+
 	/**
 	 * 2 colors: one for the actual color (either white or blue) and one to store 
 	 * temporary changes to the spot's color if it is selected.
@@ -39,10 +48,10 @@ public class Spot {
 		y = theY;	
 
 		if((x+y)%2 == 1)
-			spotColor = new Color(0, 200, 200);
+			spotColor = DARK;
 		else
 
-			spotColor = new Color(230, 230, 230);
+			spotColor = LIGHT;
 		currentColor = spotColor;
 	}
 
@@ -57,6 +66,36 @@ public class Spot {
 
 	}
 
+	/**
+	 * Draws the square in its actual color, ignoring any selection.  Used to draw the
+	 * empty board once.
+	 */
+	public void drawBase(Graphics pane){
+		pane.setColor(spotColor);
+		pane.fillRect(x*50, y*50, BOX_SIZE, BOX_SIZE);
+	}
+
+	/**
+	 * Returns the color the spot is drawn in now.
+	 */
+	public Color getColor(){
+		return currentColor;
+	}
+
+	/**
+	 * Returns the rectangle of the window the spot is drawn in.
+	 */
+	public Rectangle getArea(){
+		return new Rectangle(x*50, y*50, BOX_SIZE, BOX_SIZE);
+	}
+
+	/**
+	 * Returns true if the spot is selected or red, so it must be drawn over the empty board.
+	 */
+	public boolean isHighlighted(){
+		return currentColor != spotColor;
+	}
+
 	/**
 	 * Takes 2 coordinates and tests to see if they are contained in the spot.  This will
 	 * be used to test if the user has clicked a square.
@@ -69,7 +108,7 @@ public class Spot {
 	 * Sets the currentColor to red. This is called if the king is in check.
 	 */
 	public void setSquareRed(){
-		currentColor = new Color(200, 0, 0);
+		currentColor = CHECK;
 		isRed = true;
 	}
 
@@ -77,8 +116,15 @@ public class Spot {
 	 * Sets the currentColor to yellow.
 	 */
 	public void select(){
-		currentColor = new Color(250, 250, 100);
+		currentColor = SELECTED;
+
+	}
 
+	/**
+	 * Sets the currentColor to green, to show the selected piece can move here.
+	 */
+	public void showDestination(){
+		currentColor = DESTINATION;
 	}
 
 	/**
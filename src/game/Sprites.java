@@ -0,0 +1,72 @@
+package game;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+import pieces.*;
+import rules.Position;
+
+/**
+ * The Sprites class draws each kind of piece and the empty board only once, into images, so
+ * the Board can paint a frame by copying images instead of drawing every polygon again.  The
+ * pieces are drawn by their own drawPiece() methods, so a sprite looks exactly like the piece
+ * drawn directly.
+ */
+public final class Sprites {
+
+	/**
+	 * The size in pixels of a square and so of a piece sprite.
+	 */
+	public static final int SQUARE_SIZE = 50;
+
+	/**
+	 * One sprite per color and Position piece type.
+	 */
+	private static final BufferedImage[][] PIECES = new BufferedImage[2][6];
+
+	static{
+		for(int color=Position.WHITE; color<=Position.BLACK; color++){
+			boolean isWhite = color == Position.WHITE;
+			Piece[] models = {new Pawn(0, 0, isWhite), new Knight(0, 0, isWhite), new Bishop(0, 0, isWhite),
+					new Rook(0, 0, isWhite), new Queen(0, 0, isWhite), new King(0, 0, isWhite)};
+			for(Piece model: models){
+				BufferedImage sprite = new BufferedImage(SQUARE_SIZE, SQUARE_SIZE, BufferedImage.TYPE_INT_ARGB_PRE);
+				Graphics2D pane = sprite.createGraphics();
+				pane.setColor(isWhite ? Color.white : Color.black);
+				model.drawPiece(pane);
+				pane.dispose();
+				PIECES[color][model.getType()] = sprite;
+			}
+		}
+	}
+
+	/**
+	 * This class only holds static methods.
+	 */
+	private Sprites(){
+	}
+
+	/**
+	 * Returns the sprite of a piece, to be drawn at its x and y times SQUARE_SIZE.
+	 */
+	public static BufferedImage of(Piece piece){
+		return PIECES[piece.getColor()][piece.getType()];
+	}
+
+	/**
+	 * Draws the spots in their own colors into a new image of the 8 by 8 squares, to be drawn
+	 * at SQUARE_SIZE, SQUARE_SIZE.
+	 */
+	public static BufferedImage board(Spot[][] spots){
+		BufferedImage board = new BufferedImage(8*SQUARE_SIZE, 8*SQUARE_SIZE, BufferedImage.TYPE_INT_RGB);
+		Graphics2D pane = board.createGraphics();
+		pane.translate(-SQUARE_SIZE, -SQUARE_SIZE);
+		for(Spot[] column: spots)
+			for(Spot spot: column)
+				spot.drawBase(pane);
+		pane.dispose();
+		return board;
+	}
+
+}  // End Sprites
@@ -0,0 +1,454 @@
+package pgn;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+import game.Game;
+import rules.Move;
+import rules.MoveGenerator;
+
+/**
+ * The PgnReader class checks the games in one part of a PGN file.  The file is read through a
+ * memory-mapped window of at most WINDOW bytes which slides along as the reader goes, so only
+ * the window is ever mapped however large the file is.  Each game is replayed move by move
+ * through one reused Game, and so through the same Player.checkMove() rules as a click on the
+ * board.  Moves are copied straight from the mapped bytes into a small reused byte array, so
+ * no String is made per move; only the reports of illegal moves are turned into text.
+ *
+ * A game belongs to the reader whose part of the file holds the first byte of its tags, so the
+ * file can be cut anywhere and every game is still read exactly once.  Games with a FEN tag
+ * are replayed from that position, read straight from the mapped bytes.
+ */
+public class PgnReader implements Runnable {
+
+	/**
+	 * The most reports of illegal games kept by one reader.  Every illegal game is counted.
+	 */
+	public static final int MAX_REPORTS = 1000;
+
+	/**
+	 * The size of the mapped window, and how far before a remapped offset the window starts
+	 * so looking back at the previous line does not remap again.
+	 */
+	private static final long WINDOW = 64L << 20, MARGIN = 1 << 16;
+
+	/**
+	 * The longest move text kept; longer tokens are reported as they are not moves.
+	 */
+	private static final int MAX_TOKEN = 32;
+
+	/**
+	 * The file, its size and the part this reader owns.
+	 */
+	private final FileChannel channel;
+	private final long size, start, end;
+
+	/**
+	 * The mapped window and the file offsets it covers.
+	 */
+	private MappedByteBuffer window;
+	private long windowStart, windowEnd;
+
+	/**
+	 * The game being replayed, the buffer its legal moves are generated into and the text of
+	 * the current move.
+	 */
+	private final Game game = new Game();
+	private final int[] moves = new int[MoveGenerator.MAX_MOVES];
+	private final byte[] token = new byte[MAX_TOKEN];
+
+	/**
+	 * What has been read so far.
+	 */
+	private long games, plies, illegalGames;
+
+	/**
+	 * The first MAX_REPORTS illegal games: the game number within this reader, the file offset
+	 * of the game, the ply of the illegal move and what was wrong with it.
+	 */
+	private final long[] reportGames = new long[MAX_REPORTS], reportOffsets = new long[MAX_REPORTS];
+	private final int[] reportPlies = new int[MAX_REPORTS];
+	private final String[] reportMessages = new String[MAX_REPORTS];
+	private int reports;
+
+	/**
+	 * Set if the file could not be read, or the reader stopped on an unexpected error.
+	 */
+	private IOException failure;
+
+	/**
+	 * Set when run() has gone through its whole part of the file.
+	 */
+	private volatile boolean finished;
+
+	/**
+	 * The constructor takes the open file, its size and the offsets of the part to read.
+	 */
+	public PgnReader(FileChannel channel, long size, long start, long end){
+		this.channel = channel;
+		this.size = size;
+		this.start = start;
+		this.end = end;
+	}
+
+	/**
+	 * Reads every game starting in this reader's part of the file.
+	 */
+	public void run(){
+		long offset = start;
+		try{
+			offset = start == 0 ? skipSpaces(0) : nextGame(start);
+			while(offset < end && offset < size)
+				offset = skipSpaces(readGame(offset));
+			finished = true;
+		}catch(IOException e){
+			failure = e;
+		}catch(RuntimeException e){
+			failure = new IOException("Reader stopped in the game at byte " + offset, e);
+		}
+		window = null;
+	}
+
+	/**
+	 * Replays the game starting at the offset and returns the offset just after it.
+	 */
+	private long readGame(long offset) throws IOException{
+		long gameStart = offset;
+		games++;
+		game.reset();
+		boolean failed = false;
+		int ply = 0;
+
+		// Tag pairs, one per line
+		for(int c = at(offset); c == '[' || isSpace(c); c = at(offset)){
+			if(c == '['){
+				if(isTag(offset, "FEN") && !setUp(offset)){
+					report(gameStart, 0, "FEN tag", "malformed position");
+					failed = true;
+				}
+				offset = lineEnd(offset);
+			}
+			else
+				offset++;
+		}
+
+		boolean lineStart = true;
+		while(offset < size){
+			int c = at(offset);
+			if(c == '\n' || c == '\r'){
+				lineStart = true;
+				offset++;
+				continue;
+			}
+			if(c == '[' && lineStart)
+				break;		// the next game's tags, this one had no result
+			if(c == '%' && lineStart){
+				offset = lineEnd(offset);
+				continue;
+			}
+			lineStart = false;
+			if(c == ' ' || c == '\t' || c == ')'){
+				offset++;
+				continue;
+			}
+			if(c == '{'){
+				offset = skipPast(offset, '}');
+				continue;
+			}
+			if(c == ';'){
+				offset = lineEnd(offset);
+				continue;
+			}
+			if(c == '('){
+				offset = skipVariation(offset);
+				continue;
+			}
+
+			// A move number, a move, a NAG or the result
+			int length = 0;
+			for(; offset < size; offset++){
+				c = at(offset);
+				if(isSpace(c) || c == '{' || c == '(' || c == ')' || c == ';')
+					break;
+				if(length < MAX_TOKEN)
+					token[length] = (byte) c;
+				length++;
+			}
+			if(isResult(length))
+				break;
+			if(failed || token[0] == '$')
+				continue;
+
+			// Skip a move number, which may be written against the move as in "12.e4"
+			int first = 0;
+			while(first < length && first < MAX_TOKEN && token[first] >= '0' && token[first] <= '9')
+				first++;
+			if(first > 0 && first < length && first < MAX_TOKEN && token[first] == '.'){
+				while(first < length && first < MAX_TOKEN && token[first] == '.')
+					first++;
+				if(first == length)
+					continue;
+			}
+			else if(first == length)
+				continue;
+			else
+				first = 0;
+
+			ply++;
+			String reason = null;
+			try{
+				int move = length > MAX_TOKEN ? Move.NONE : San.resolve(token, first, length, game.getPosition(), moves);
+				if(move == San.AMBIGUOUS)
+					reason = "ambiguous move";
+				else if(move == Move.NONE)
+					reason = "no legal move matches";
+				else if(!game.move(move))
+					reason = "refused by Player.checkMove";
+			}catch(RuntimeException e){
+				// A failure in the rules only fails this game; the reader goes on with the next
+				reason = "failed with " + e;
+			}
+			if(reason != null){
+				report(gameStart, ply, new String(token, 0, Math.min(length, MAX_TOKEN), StandardCharsets.ISO_8859_1), reason);
+				failed = true;
+			}
+		}
+
+		plies += ply;
+		if(failed)
+			illegalGames++;
+		return offset;
+	}
+
+	/**
+	 * Sets the game up from the value of the FEN tag starting at the offset.  Returns false
+	 * if the tag or the position is malformed.
+	 */
+	private boolean setUp(long offset) throws IOException{
+		long valueStart = skipPast(offset, '"'), valueEnd = valueStart;
+		while(valueEnd < size && at(valueEnd) != '"' && at(valueEnd) != '\n')
+			valueEnd++;
+		if(at(valueEnd) != '"')
+			return false;
+
+		// After looking at the closing quote, at() of the opening one maps a window holding both
+		at(valueStart);
+		window.limit((int) (valueEnd - windowStart));
+		window.position((int) (valueStart - windowStart));
+		try{
+			game.setUp(window);
+			return true;
+		}catch(IllegalArgumentException e){
+			return false;
+		}finally{
+			window.clear();
+		}
+	}
+
+	/**
+	 * Returns true if the first length bytes of the token are a game result.
+	 */
+	private boolean isResult(int length){
+		if(length == 1)
+			return token[0] == '*';
+		if(length == 3)
+			return (token[0] == '1' && token[1] == '-' && token[2] == '0')
+					|| (token[0] == '0' && token[1] == '-' && token[2] == '1');
+		return length == 7 && token[0] == '1' && token[1] == '/' && token[2] == '2' && token[3] == '-'
+				&& token[4] == '1' && token[5] == '/' && token[6] == '2';
+	}
+
+	/**
+	 * Keeps a report of an illegal move, if there is still room for one.
+	 */
+	private void report(long gameStart, int ply, String text, String reason){
+		if(reports == MAX_REPORTS)
+			return;
+		reportGames[reports] = games;
+		reportOffsets[reports] = gameStart;
+		reportPlies[reports] = ply;
+		reportMessages[reports] = text + ": " + reason;
+		reports++;
+	}
+
+	/**
+	 * Returns the offset of the first game whose tags start at or after the offset: a line
+	 * starting with '[' after a line which does not.
+	 */
+	private long nextGame(long offset) throws IOException{
+		if(at(offset - 1) != '\n')
+			offset = lineEnd(offset);
+		while(offset < size){
+			if(at(offset) == '[' && !previousLineIsTag(offset))
+				return offset;
+			offset = lineEnd(offset);
+		}
+		return size;
+	}
+
+	/**
+	 * Returns true if the line before the one starting at the offset starts with '['.
+	 */
+	private boolean previousLineIsTag(long offset) throws IOException{
+		if(offset == 0)
+			return false;
+		long lineStart = offset - 1;
+		while(lineStart > 0 && at(lineStart - 1) != '\n')
+			lineStart--;
+		return at(lineStart) == '[';
+	}
+
+	/**
+	 * Returns true if the tag pair starting at the offset has the given name.
+	 */
+	private boolean isTag(long offset, String name) throws IOException{
+		for(int i=0; i<name.length(); i++)
+			if(at(offset + 1 + i) != name.charAt(i))
+				return false;
+		return at(offset + 1 + name.length()) == ' ';
+	}
+
+	/**
+	 * Returns the offset of the start of the next line.
+	 */
+	private long lineEnd(long offset) throws IOException{
+		return skipPast(offset, '\n');
+	}
+
+	/**
+	 * Returns the offset just after the next given byte, or the file size.
+	 */
+	private long skipPast(long offset, int c) throws IOException{
+		while(offset < size && at(offset) != c)
+			offset++;
+		return Math.min(offset + 1, size);
+	}
+
+	/**
+	 * Returns the offset just after the variation starting at the offset, including any
+	 * variations and comments inside it.
+	 */
+	private long skipVariation(long offset) throws IOException{
+		int depth = 0;
+		while(offset < size){
+			int c = at(offset);
+			if(c == '{')
+				offset = skipPast(offset, '}');
+			else if(c == ';')
+				offset = lineEnd(offset);
+			else{
+				offset++;
+				if(c == '(')
+					depth++;
+				else if(c == ')' && --depth == 0)
+					break;
+			}
+		}
+		return offset;
+	}
+
+	/**
+	 * Returns the offset of the first byte at or after the offset which is not a space.
+	 */
+	private long skipSpaces(long offset) throws IOException{
+		while(offset < size && isSpace(at(offset)))
+			offset++;
+		return offset;
+	}
+
+	/**
+	 * Returns true for spaces, tabs and line ends.
+	 */
+	private static boolean isSpace(int c){
+		return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+	}
+
+	/**
+	 * Returns the byte at the file offset, or -1 outside the file, mapping a new window if
+	 * the offset is outside the current one.
+	 */
+	private int at(long offset) throws IOException{
+		if(offset < 0 || offset >= size)
+			return -1;
+		if(offset < windowStart || offset >= windowEnd){
+			windowStart = Math.max(0, offset - MARGIN);
+			windowEnd = Math.min(size, windowStart + WINDOW);
+			window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowEnd - windowStart);
+		}
+		return window.get((int) (offset - windowStart)) & 0xFF;
+	}
+
+	/**
+	 * Returns the number of games starting in this reader's part of the file.
+	 */
+	public long getGames(){
+		return games;
+	}
+
+	/**
+	 * Returns the number of moves read.
+	 */
+	public long getPlies(){
+		return plies;
+	}
+
+	/**
+	 * Returns the number of games with an illegal move.
+	 */
+	public long getIllegalGames(){
+		return illegalGames;
+	}
+
+	/**
+	 * Returns the number of kept reports.
+	 */
+	public int getReports(){
+		return reports;
+	}
+
+	/**
+	 * Returns the number within this reader, counting from 1, of the game of a report.
+	 */
+	public long getReportGame(int report){
+		return reportGames[report];
+	}
+
+	/**
+	 * Returns the file offset of the game of a report.
+	 */
+	public long getReportOffset(int report){
+		return reportOffsets[report];
+	}
+
+	/**
+	 * Returns the ply, counting from 1, of the illegal move of a report.
+	 */
+	public int getReportPly(int report){
+		return reportPlies[report];
+	}
+
+	/**
+	 * Returns the move text and what was wrong with it of a report.
+	 */
+	public String getReportMessage(int report){
+		return reportMessages[report];
+	}
+
+	/**
+	 * Returns true if the reader went through its whole part of the file.  False after
+	 * run() if it stopped early, even on an error it could not record.
+	 */
+	public boolean isFinished(){
+		return finished;
+	}
+
+	/**
+	 * Returns the error which stopped the reader, or null.
+	 */
+	public IOException getFailure(){
+		return failure;
+	}
+
+}  // End PgnReader
@@ -0,0 +1,100 @@
+package pgn;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The PgnValidator class checks every game of a PGN file against the move rules of this
+ * project and reports each illegal move by game number and ply.  The file is cut into one part
+ * per thread and each part is read by its own PgnReader; the cuts may fall anywhere, since a
+ * reader skips to the first game starting in its part and finishes the last game it started.
+ * Memory use stays the same whatever the size of the file.
+ *
+ * java pgn.PgnValidator games.pgn [threads]
+ */
+public final class PgnValidator {
+
+	/**
+	 * This class only holds static methods.
+	 */
+	private PgnValidator(){
+	}
+
+	/**
+	 * Checks the file with the given number of threads, prints the illegal moves and a summary,
+	 * and returns the number of games with an illegal move.
+	 */
+	public static long validate(Path file, int threads, PrintStream out) throws IOException{
+		long started = System.nanoTime();
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)){
+			long size = channel.size();
+			threads = (int) Math.max(1, Math.min(threads, size >>> 20));
+
+			PgnReader[] readers = new PgnReader[threads];
+			Thread[] running = new Thread[threads];
+			for(int i=0; i<threads; i++){
+				readers[i] = new PgnReader(channel, size, size * i / threads, size * (i + 1) / threads);
+				running[i] = new Thread(readers[i], "pgn-reader-" + i);
+				running[i].start();
+			}
+			for(Thread thread: running){
+				try{
+					thread.join();
+				}catch(InterruptedException e){
+					Thread.currentThread().interrupt();
+					throw new IOException("Interrupted while reading " + file, e);
+				}
+			}
+
+			// Readers number their own games; the games of the earlier parts come first
+			long games = 0, plies = 0, illegal = 0;
+			for(PgnReader reader: readers){
+				if(reader.getFailure() != null)
+					throw reader.getFailure();
+				if(!reader.isFinished())
+					throw new IOException("A reader of " + file + " stopped before the end of its part");
+				for(int i=0; i<reader.getReports(); i++)
+					out.printf("Game %d (byte %d), ply %d: %s%n", games + reader.getReportGame(i),
+							reader.getReportOffset(i), reader.getReportPly(i), reader.getReportMessage(i));
+				if(reader.getIllegalGames() > reader.getReports())
+					out.printf("... %d more illegal games not listed%n", reader.getIllegalGames() - reader.getReports());
+				games += reader.getGames();
+				plies += reader.getPlies();
+				illegal += reader.getIllegalGames();
+			}
+
+			double seconds = Math.max(1, System.nanoTime() - started) / 1e9;
+			out.printf("Games: %d  Plies: %d  Illegal games: %d%n", games, plies, illegal);
+			out.printf("Time: %.2f s  %.0f games/s  %.1f MB/s  (%d threads)%n", seconds, games / seconds,
+					size / seconds / (1 << 20), threads);
+			return illegal;
+		}
+	}
+
+	/**
+	 * Checks the file named by the first argument, with the number of threads of the second
+	 * argument or one per core.  Exits with status 1 if any game has an illegal move, and 2
+	 * if the file could not be checked to the end.
+	 */
+	public static void main(String[] args){
+		if(args.length == 0){
+			System.err.println("Usage: java pgn.PgnValidator games.pgn [threads]");
+			System.exit(2);
+		}
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		try{
+			long illegal = validate(Paths.get(args[0]), threads, System.out);
+			System.exit(illegal == 0 ? 0 : 1);
+		}catch(IOException e){
+			System.err.println("Could not check " + args[0] + ": " + e);
+			if(e.getCause() != null)
+				e.getCause().printStackTrace();
+			System.exit(2);
+		}
+	}
+
+}  // End PgnValidator
@@ -0,0 +1,125 @@
+package pgn;
+
+import rules.Move;
+import rules.MoveGenerator;
+import rules.Position;
+
+/**
+ * The San class turns a move written in Standard Algebraic Notation, such as "Nbd7", "exd8=Q+"
+ * or "O-O-O", into the Move encoding of the one legal move it describes.  The text is read from
+ * a byte array, so a reader can hand over the bytes of a file without making a String per move.
+ */
+public final class San {
+
+	/**
+	 * Returned by resolve() when more than one legal move matches the text.
+	 */
+	public static final int AMBIGUOUS = -1;
+
+	/**
+	 * This class only holds static methods.
+	 */
+	private San(){
+	}
+
+	/**
+	 * Returns the legal move of the position written in text[start] to text[end - 1],
+	 * Move.NONE if the text is not a move or no legal move matches it, or AMBIGUOUS.  Check
+	 * marks and annotations such as "+", "#" or "!?" at the end are ignored.  The legal moves
+	 * are generated into the given buffer of at least MoveGenerator.MAX_MOVES moves.
+	 */
+	public static int resolve(byte[] text, int start, int end, Position position, int[] moves){
+		while(end > start && (text[end - 1] == '+' || text[end - 1] == '#' || text[end - 1] == '!' || text[end - 1] == '?'))
+			end--;
+		if(end - start < 2)
+			return Move.NONE;
+		int count = MoveGenerator.generate(position, moves, 0);
+
+		// Castling, also accepted with zeros
+		if(text[start] == 'O' || text[start] == '0'){
+			int flags;
+			if(end - start == 3)
+				flags = Move.KING_CASTLE;
+			else if(end - start == 5)
+				flags = Move.QUEEN_CASTLE;
+			else
+				return Move.NONE;
+			for(int i=0; i<count; i++)
+				if(Move.flags(moves[i]) == flags)
+					return moves[i];
+			return Move.NONE;
+		}
+
+		int type = pieceType(text[start]);
+		if(type > Position.PAWN)
+			start++;
+		else
+			type = Position.PAWN;
+
+		// The promotion piece, written "e8=Q" or "e8Q"
+		int promotion = -1;
+		if(type == Position.PAWN){
+			if(end - start >= 4 && text[end - 2] == '='){
+				promotion = pieceType(text[end - 1]);
+				end -= 2;
+			}
+			else if(end - start >= 3 && pieceType(text[end - 1]) > Position.PAWN){
+				promotion = pieceType(text[end - 1]);
+				end--;
+			}
+			if(promotion == Position.KING)
+				return Move.NONE;
+		}
+
+		// The destination is always the last square
+		if(end - start < 2)
+			return Move.NONE;
+		int toFile = text[end - 2] - 'a', toRank = text[end - 1] - '1';
+		if(toFile < 0 || toFile > 7 || toRank < 0 || toRank > 7)
+			return Move.NONE;
+		int to = toRank*8 + toFile;
+
+		// Anything before it tells apart moves of the same piece type
+		int fromFile = -1, fromRank = -1;
+		for(int i=start; i<end - 2; i++){
+			byte c = text[i];
+			if(c >= 'a' && c <= 'h')
+				fromFile = c - 'a';
+			else if(c >= '1' && c <= '8')
+				fromRank = c - '1';
+			else if(c != 'x' && c != ':' && c != '-')
+				return Move.NONE;
+		}
+
+		int found = Move.NONE;
+		for(int i=0; i<count; i++){
+			int move = moves[i];
+			int from = Move.from(move);
+			if(Move.to(move) != to || Position.typeOf(position.getPiece(from)) != type)
+				continue;
+			if((fromFile >= 0 && (from & 7) != fromFile) || (fromRank >= 0 && (from >>> 3) != fromRank))
+				continue;
+			if(Move.isPromotion(move) ? Move.promotionType(move) != promotion : promotion >= 0)
+				continue;
+			if(found != Move.NONE)
+				return AMBIGUOUS;
+			found = move;
+		}
+		return found;
+	}
+
+	/**
+	 * Returns the Position piece type of an upper case SAN piece letter, or -1.
+	 */
+	private static int pieceType(byte c){
+		switch(c){
+		case 'N': return Position.KNIGHT;
+		case 'B': return Position.BISHOP;
+		case 'R': return Position.ROOK;
+		case 'Q': return Position.QUEEN;
+		case 'K': return Position.KING;
+		default: return -1;
+		}
+	}
+
+}  // End San
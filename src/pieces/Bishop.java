@@ -4,6 +4,10 @@ import java.awt.Color;
 import java.awt.Graphics;
 import java.awt.Polygon;
 
+import rules.Attacks;
+import rules.Bitboards;
+import rules.Position;
+
 /**
  * A derived class of Piece. In chess, the bishop can move any amount of spaces diagonally as long
  * as it does not jump over other pieces.  Bishops have a material value of 3.
@@ -51,48 +55,24 @@ public class Bishop extends Piece{
 
 
 	/**
-	 * Given the coordinate location the piece is attempting to move to, and the arrays of both 
-	 * player's pieces, this method will return true if the move is a legal move.
+	 * Returns the piece type used by the bitboard position.
 	 */
-	public boolean isLegal(int someX, int someY, Piece[] enemyPieces,
-			Piece[] allyPieces) {
+	public int getType(){
+		return Position.BISHOP;
+	}
 
-		boolean result = false;
-		int distanceX = someX - getX();
-		int distanceY = someY - getY();
-		Piece[] allPieces = getAllPieces(enemyPieces, allyPieces);
+	/**
+	 * Given the coordinate location the piece is attempting to move to and the bitboard
+	 * position, this method will return true if the move is a legal move.
+	 */
+	public boolean isLegal(int someX, int someY, Position position) {
 
+		boolean result = false;
+		int from = getSquare(), to = Bitboards.square(someX, someY);
 
-		if(Math.abs(distanceX) == Math.abs(distanceY)){
-			result = super.isLegal(someX, someY, enemyPieces, allyPieces);
-		}
-		for(Piece piece: allPieces){
-			if(piece != null){
-
-
-				if(distanceX < 0){ 			// if moving to the left
-					for(int i=1; i < Math.abs(distanceX); i++){
-						if(distanceY <0){  // if moving up
-							if(piece.isOn(getX()-i, getY()-i))
-								result = false;
-						}else{				// if moving down
-
-							if(piece.isOn(getX()-i, getY()+i))
-								result = false;
-						}
-					}
-
-				}else { 			// if moving to the right
-					for(int i=1; i < Math.abs(distanceX); i++){
-						if(distanceY <0){		// if moving up
-							if(piece.isOn(getX()+i, getY()-i))
-								result = false;
-						}else				// if moving down
-							if(piece.isOn(getX()+i, getY()+i))
-								result = false;
-					}
-				}
-			}
+		// The target must be reachable along a diagonal, with no piece in between
+		if((Attacks.bishopAttacks(from, position.getOccupied()) & Bitboards.bit(to)) != 0){
+			result = super.isLegal(someX, someY, position);
 		}
 		return result;
 	}
@@ -4,6 +4,9 @@ import java.awt.Color;
 import java.awt.Graphics;
 import java.awt.Polygon;
 
+import rules.Bitboards;
+import rules.Position;
+
 /**
  * A derived class of Piece. In chess, a player cannot move if their king is currently
  * being threatened, or 'in check'.  The king can move 1 space in any direction, unless it
@@ -13,24 +16,6 @@ import java.awt.Polygon;
  */
 public class King extends Piece{
 
-	/**
-	 * A boolean to keep track if the king has moved from its home square. After the 1st time
-	 * the king moves, hasMoved is set to true, and the king can no longer castle.
-	 */
-	private boolean hasMoved = false;
-
-	/**
-	 * Constants to determine if the king is or is not castling to a certain side.
-	 */
-	private final int NOT_CASTLING = 0, CASTLED_KING = 1, CASTLED_QUEEN = 2;
-
-	/**
-	 * This value will equal 0 if the king is not trying to castle, 1 if the king is trying to
-	 * castle king side, and 2 if the king is trying to castle queen side.  Used as a test by the
-	 * player of the king in order to move the respective rook.
-	 */
-	private int castled = 0;
-
 	/**
 	 * Passes its starting coordinate location on the board, its material value, and a boolean
 	 * which determines if the piece is part of the white or black pieces.
@@ -40,14 +25,6 @@ public class King extends Piece{
 	}
 
 
-	/**
-	 * Will be called to check if the king has just attempted to castle on the last move.
-	 */
-	public int getCastling(){
-		return castled;
-	}
-
-
 	/**
 	 * Draws the king at its location on the board.
 	 */
@@ -85,54 +62,50 @@ public class King extends Piece{
 	}
 
 	/**
-	 * Given the coordinate location the piece is attempting to move to, and the arrays of both 
-	 * player's pieces, this method will return true if the move is a legal move.
+	 * Returns the piece type used by the bitboard position.
 	 */
-	public boolean isLegal(int someX, int someY, Piece[] enemyPieces,
-			Piece[] allyPieces) {
+	public int getType(){
+		return Position.KING;
+	}
 
-		boolean result = true;
+	/**
+	 * Given the coordinate location the piece is attempting to move to and the bitboard
+	 * position, this method will return true if the king moves that way.  Castling is
+	 * allowed while the position keeps the castling right, which is lost once the king has
+	 * moved.  Whether the king would be in check is left to the position's legal moves.
+	 */
+	public boolean isLegal(int someX, int someY, Position position) {
+
+		boolean result;
 
-		castled = NOT_CASTLING;
 		int distanceX = someX - getX();
 		int distanceY = someY - getY();
 
-		Piece[] allPieces = getAllPieces(enemyPieces, allyPieces);
-
-		if((distanceX == 0 ) && (Math.abs(distanceY) == 1)){
-			result = super.isLegal(someX, someY, enemyPieces, allyPieces);
+		if((Bitboards.KING_ATTACKS[getSquare()] & Bitboards.bit(someX, someY)) != 0){
+			result = super.isLegal(someX, someY, position);
 		}
-		else if((Math.abs(distanceX) == 1) && ((distanceY ==0) || (Math.abs(distanceY) == 1))){
-			result = super.isLegal(someX, someY, enemyPieces, allyPieces);
+		else if((distanceX == 2) && (distanceY == 0)){  // castling queen side
+			result = canCastleTo(Bitboards.square(8, getY()), position);
 		}
-		else if((!hasMoved) && (distanceX == 2) && (distanceY == 0)){  // castling queen side
-			castled = CASTLED_QUEEN;
-			for(Piece piece: allPieces){
-				for(int i=1; i <= 3; i++)
-					if((piece != null) && (piece.isOn(getX()+i, getY()))){
-						result = false;
-						castled = NOT_CASTLING;
-					}
-			}
-		}
-		else if((!hasMoved) && (distanceX == -2) && (distanceY ==0)){  // castling king side
-			castled = CASTLED_KING;
-			for(Piece piece: allPieces){
-				for(int i=1; i <= 2; i++)
-					if((piece != null) && (piece.isOn(getX()-i, getY()))){
-						result = false;
-						castled = NOT_CASTLING;
-					}
-			}
-
+		else if((distanceX == -2) && (distanceY ==0)){  // castling king side
+			result = canCastleTo(Bitboards.square(1, getY()), position);
 		}
 		else
 			result = false;
 
-
-		if(result)
-			hasMoved = true;
 		return result;
 	}
 
+	/**
+	 * Returns true if the position still has the castling right for that side, the king's
+	 * own rook stands on the corner square and every square between the king and that rook
+	 * is empty.
+	 */
+	private boolean canCastleTo(int rookSquare, Position position){
+		int right = (rookSquare & 7) == 7 ? Position.WHITE_KING_SIDE : Position.WHITE_QUEEN_SIDE;
+		return ((position.getCastlingRights() & (right << (2*getColor()))) != 0) &&
+				((position.getPieces(getColor(), Position.ROOK) & Bitboards.bit(rookSquare)) != 0) &&
+				((Bitboards.BETWEEN[getSquare()][rookSquare] & position.getOccupied()) == 0);
+	}
+
 } // End King
\ No newline at end of file
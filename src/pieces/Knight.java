@@ -4,6 +4,9 @@ import java.awt.Color;
 import java.awt.Graphics;
 import java.awt.Polygon;
 
+import rules.Bitboards;
+import rules.Position;
+
 /**
  * A derived class of Piece. In chess, the knight is unique as it is the only piece which can
  * jump over other pieces.  Knights move in an L shape and have a material value of 3.
@@ -59,18 +62,21 @@ public class Knight extends Piece {
 	}
 
 	/**
-	 * Given the coordinate location the piece is attempting to move to, and the arrays of both 
-	 * player's pieces, this method will return true if the move is a legal move.
+	 * Returns the piece type used by the bitboard position.
 	 */
-	public boolean isLegal(int someX, int someY, Piece[] enemyPieces, Piece[] allyPieces) {
-		boolean result = false;
-
+	public int getType(){
+		return Position.KNIGHT;
+	}
 
+	/**
+	 * Given the coordinate location the piece is attempting to move to and the bitboard
+	 * position, this method will return true if the move is a legal move.
+	 */
+	public boolean isLegal(int someX, int someY, Position position) {
+		boolean result = false;
 
-		if(((someX == getX()+1) || (someX == getX()-1)) && ((someY == getY()+2) || (someY == getY()-2)))
-			result = super.isLegal(someX, someY, enemyPieces, allyPieces);
-		else if(((someX == getX()+2) || (someX == getX()-2)) && ((someY == getY()+1) || (someY == getY()-1)))
-			result = super.isLegal(someX, someY, enemyPieces, allyPieces);
+		if((Bitboards.KNIGHT_ATTACKS[getSquare()] & Bitboards.bit(someX, someY)) != 0)
+			result = super.isLegal(someX, someY, position);
 		return result;
 	}
 
@@ -7,6 +7,9 @@ import java.awt.Graphics2D;
 import java.awt.Polygon;
 import java.awt.geom.Ellipse2D;
 
+import rules.Bitboards;
+import rules.Position;
+
 /**
  * A derived class of Piece. In chess, a pawn is the only piece that moves differently than
  * it attacks.  Pawns attack 1 space in the forward diagonal direction, and move 1 space in 
@@ -21,11 +24,6 @@ public class Pawn extends Piece{
 	 */
 	private final int CIRCLE_RADIUS = 20;
 
-	/**
-	 * A boolean set to be true if the pawn makes it to the other side of the board.
-	 */
-	private boolean  promoted = false;
-
 
 	/**
 	 * Passes its starting coordinate location on the board, its material value, and a boolean
@@ -69,98 +67,46 @@ public class Pawn extends Piece{
 	}
 
 	/**
-	 * Given the coordinate location the piece is attempting to move to, and the arrays of both 
-	 * player's pieces, this method will return true if the move is a legal move.
+	 * Returns the piece type used by the bitboard position.
 	 */
-	public boolean isLegal(int someX, int someY, Piece[] enemyPieces, Piece[] allyPieces) {
-		boolean result = false;
-
-
-		Piece[] allPieces = getAllPieces(enemyPieces, allyPieces);
+	public int getType(){
+		return Position.PAWN;
+	}
 
+	/**
+	 * Given the coordinate location the piece is attempting to move to and the bitboard
+	 * position, this method will return true if the pawn moves that way.  What a pawn
+	 * reaching the last row becomes is decided by the move made on the position.
+	 */
+	public boolean isLegal(int someX, int someY, Position position) {
+		boolean result = false;
 
+		int direction, startRow;
 		if(getWhite()){									// if the pawn is white
-			if((someX == getX()) && (someY == getY() + 1)){
-				result = true;
-				for(Piece piece: allPieces){
-					if((piece != null) && (piece.isOn(getX(), getY()+1)))
-						result = false;
-				}
-			}
-			else if((someY == getY()+2) && (getY() == 2) && (someX == getX())){
-				result = true;
-				for(Piece piece: allPieces){
-					if((piece != null) && ((piece.isOn(getX(), getY()+2) || (piece.isOn(getX(), getY()+1)))))
-						result = false;
-				}
-			}
-			else if((someY == getY()+1) && (someX == getX()+1 )){
-				for(Piece piece: enemyPieces){
-					if((piece != null) && ((piece.isOn(getX()+1, getY()+1))))
-						result = true;
-				}
-			}
-			else if((someY == getY()+1) && (someX == getX()-1 )){
-				for(Piece piece: enemyPieces){
-					if((piece != null) && (piece.isOn(getX()-1, getY()+1)))
-						result = true;
-				}
-			}
-
-			if((result) && (someY == 8))		//  if pawn is at the end of the board
-				promotePawn();					// promotion
-
+			direction = 1;
+			startRow = 2;
 		}else{ 									// if the pawn is black
-			if((someX == getX()) && ((someY == getY() - 1))){
-				result = true;
-
-				for(Piece piece: allPieces){
-					if((piece != null) && (piece.isOn(getX(), getY()-1)))
-						result = false;
-				}
-
-			}else if((someY == getY() - 2) && (getY() == 7) && (someX == getX())){
-				result = true;
-				for(Piece piece: allPieces){
-					if((piece != null) && ((piece.isOn(getX(), getY()-1) || piece.isOn(getX(), getY()-2))))
-						result = false;
-
-
-				}
-
-
-			}
-			else if((someY == getY()-1) && (someX == getX()+1 )){
-				for(Piece piece: enemyPieces){
-					if((piece != null) && (piece.isOn(getX()+1, getY()-1)))
-						result = true;
-				}
-			}
-			else if((someY == getY()-1) && (someX == getX()-1 )){		
-				for(Piece piece: enemyPieces){
-					if((piece != null) && (piece.isOn(getX()-1, getY()-1)))
-						result = true;
-				}
-			}
-			if((result) && (someY == 1))		//  if pawn is at the end of the board
-				promotePawn();					// promotion
-
+			direction = -1;
+			startRow = 7;
 		}
-		return result;
-	}
 
-	/**
-	 * Sets promoted to true when the pawn reaches the other side of the board.
-	 */
-	private void promotePawn(){
-		promoted = true;
-	}
+		long occupied = position.getOccupied();
+		long target = Bitboards.bit(someX, someY);
 
-	/**
-	 * Returns true if the pawn has just promoted.
-	 */
-	public boolean getPromoted(){
-		return promoted;
+		if((someX == getX()) && (someY == getY() + direction)){
+			result = (occupied & target) == 0;
+		}
+		else if((someX == getX()) && (someY == getY() + 2*direction) && (getY() == startRow)){
+			result = (occupied & (target | Bitboards.bit(getX(), getY() + direction))) == 0;
+		}
+		else{												// capturing diagonally
+			long enemies = position.getOccupancy(1 - getColor());
+			if(position.getEnPassantSquare() >= 0)			// or en passant
+				enemies |= Bitboards.bit(position.getEnPassantSquare());
+			result = (Bitboards.PAWN_ATTACKS[getColor()][getSquare()] & enemies & target) != 0;
+		}
+
+		return result;
 	}
 
 }// End Pawn
\ No newline at end of file
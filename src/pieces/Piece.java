@@ -2,6 +2,8 @@ package pieces;
 import java.awt.*;
 import java.awt.geom.AffineTransform;
 
+import rules.Bitboards;
+import rules.Position;
 
 /**
  * The abstract class Piece will be the parent class of each different chess piece.  A Piece
@@ -40,14 +42,6 @@ public abstract class Piece {
 		return isWhite;
 	}
 
-	/**
-	 * The Pawn class is the only derived class that overrides this method.  For all other
-	 * pieces, it returns false since only pawns can become a different piece.
-	 */
-	public boolean getPromoted(){
-		return false;
-	}
-
 	/**
 	 * Returns the material value of the piece.
 	 */
@@ -70,36 +64,41 @@ public abstract class Piece {
 	}
 
 	/**
-	 * The King class is the only derived class that overrides this method.  For all other
-	 * pieces, it returns 0 since only kings can castle.
+	 * This method is abstract because each piece will need to be able to draw itself
+	 * but no two pieces are drawn the same.
+	 */
+	public abstract void drawPiece(Graphics pane);
+
+	/**
+	 * Returns the Position piece type (Position.PAWN to Position.KING) of the piece.
+	 */
+	public abstract int getType();
+
+	/**
+	 * Returns the Position color index of the piece.
 	 */
-	public int getCastling(){
-		return 0;
+	public int getColor(){
+		return isWhite ? Position.WHITE : Position.BLACK;
 	}
 
 	/**
-	 * This method is abstract because each piece will need to be able to draw itself
-	 * but no two pieces are drawn the same.
+	 * Returns the bitboard square index the piece stands on.
 	 */
-	public abstract void drawPiece(Graphics pane);
+	public int getSquare(){
+		return Bitboards.square(x, y);
+	}
 
 	/**
 	 * This method will be overridden by each piece, but will call the super for this method
 	 * to check if there is an ally piece on the square they are attempting to move to.
 	 */
-	public boolean isLegal(int someX, int someY, Piece[] enemyPieces, Piece[] allyPieces){
-
-		boolean result = true;
-		for(Piece piece: allyPieces){
-			if((piece != null) && (piece.isOn(someX, someY)))
-				result = false;
-		}
-		return result;
+	public boolean isLegal(int someX, int someY, Position position){
+		return (position.getOccupancy(getColor()) & Bitboards.bit(someX, someY)) == 0;
 	}
 
 	/**
 	 * Sets the location to a different coordinate pair.  This will be called after the
-	 * move has been verified by isLegal().
+	 * move has been made on the position.
 	 */
 	public void movePiece(int moveX, int moveY){
 		x = moveX;
@@ -118,23 +117,4 @@ public abstract class Piece {
 
 	}
 
-	/**
-	 * Given 2 arrays, one with the white player's pieces and one with the black
-	 * player's pieces, return the combination of the two arrays.  This method will
-	 * be called by a piece when it needs to check if there are any pieces between
-	 * its current location and the other square which it wishes to move to.
-	 */
-	public Piece[] getAllPieces(Piece[] whitePieces, Piece[] blackPieces){
-
-		Piece[] allPieces = new Piece[whitePieces.length + blackPieces.length];
-
-		for(int i=0; i<allPieces.length; i++){
-			if(i < whitePieces.length)
-				allPieces[i] = whitePieces[i];
-			else
-				allPieces[i] = blackPieces[i-whitePieces.length];
-		}
-		return allPieces;
-	}	
-
 }  // End Piece
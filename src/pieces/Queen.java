@@ -4,6 +4,10 @@ import java.awt.Color;
 import java.awt.Graphics;
 import java.awt.Polygon;
 
+import rules.Attacks;
+import rules.Bitboards;
+import rules.Position;
+
 /**
  * A derived class of Piece. In chess, the queen can move like a bishop and a rook combined.  Like
  * most pieces, it cannot jump over other pieces.  It is the strongest attacking piece on the board
@@ -64,88 +68,24 @@ public class Queen extends Piece{
 
 
 	/**
-	 * Given the coordinate location the piece is attempting to move to, and the arrays of both 
-	 * player's pieces, this method will return true if the move is a legal move.
+	 * Returns the piece type used by the bitboard position.
 	 */
-	public boolean isLegal(int someX, int someY, Piece[] enemyPieces,
-			Piece[] allyPieces) {
-
-		boolean result = false;
-		boolean moveDiagonal = false;
-		int distanceX = someX - getX();
-		int distanceY = someY - getY();
-		Piece[] allPieces = getAllPieces(enemyPieces, allyPieces);
+	public int getType(){
+		return Position.QUEEN;
+	}
 
-		if(Math.abs(distanceX) == Math.abs(distanceY))		// moving like a bishop
-			moveDiagonal = true;
-		else if((getX() == someX) ^ (getY() == someY))		// moving like a rook
-			moveDiagonal = false;
+	/**
+	 * Given the coordinate location the piece is attempting to move to and the bitboard
+	 * position, this method will return true if the move is a legal move.
+	 */
+	public boolean isLegal(int someX, int someY, Position position) {
 
+		boolean result = false;
+		int from = getSquare(), to = Bitboards.square(someX, someY);
 
-		if(((Math.abs(distanceX) == Math.abs(distanceY))) || ((getX() == someX) ^ (getY() == someY))){
-			result = super.isLegal(someX, someY, enemyPieces, allyPieces);
-		}
-		if(moveDiagonal){
-			for(Piece piece: allPieces){
-				if(piece != null){
-
-
-					if(distanceX < 0){ 			// if moving to the left
-						for(int i=1; i < Math.abs(distanceX); i++){
-							if(distanceY <0){  // if moving up
-								if(piece.isOn(getX()-i, getY()-i))
-									result = false;
-							}else{				// if moving down
-
-								if(piece.isOn(getX()-i, getY()+i))
-									result = false;
-							}
-						}
-
-					}else { 			// if moving to the right
-						for(int i=1; i < Math.abs(distanceX); i++){
-							if(distanceY <0){		// if moving up
-								if(piece.isOn(getX()+i, getY()-i))
-									result = false;
-							}else				// if moving down
-								if(piece.isOn(getX()+i, getY()+i))
-									result = false;
-						}
-
-
-					}
-				}
-			}
-		}else{
-			if(getX() == someX){
-				for(Piece piece: allPieces){
-					if(piece != null){
-
-						for(int i=1; i < Math.abs(distanceY); i++){
-							if(distanceY > 0){
-								if(piece.isOn(someX, someY-i))
-									result = false;
-							}else
-								if(piece.isOn(someX, someY+i))
-									result = false;
-						}
-					}
-				}
-
-			}else if (getY() == someY){
-				for(Piece piece: allPieces){
-					if(piece != null)
-						for(int i=1; i < Math.abs(distanceX); i++){
-							if(distanceX > 0){
-								if(piece.isOn(someX-i, someY))
-									result = false;
-							}else
-
-								if(piece.isOn(someX+i, someY))
-									result = false;
-						}
-				}
-			}
+		// moving like a bishop or a rook, with no piece in between
+		if((Attacks.queenAttacks(from, position.getOccupied()) & Bitboards.bit(to)) != 0){
+			result = super.isLegal(someX, someY, position);
 		}
 		return result;
 	}
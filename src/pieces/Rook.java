@@ -6,6 +6,10 @@ import java.awt.Graphics2D;
 import java.awt.Polygon;
 import java.awt.geom.AffineTransform;
 
+import rules.Attacks;
+import rules.Bitboards;
+import rules.Position;
+
 /**
  * A derived class of Piece. In chess, the rook can move down columns and through rows as 
  * many spaces as it wants as long as it does not jump over another piece.  It has a material
@@ -13,6 +17,12 @@ import java.awt.geom.AffineTransform;
  */
 public class Rook extends Piece{
 
+	/**
+	 * The rook is drawn 5 times too large and scaled down by this transform.  It is applied
+	 * on top of the caller's transform, so the rook still lands where the caller translated to.
+	 */
+	private static final AffineTransform SCALE = new AffineTransform(0.2, 0, 0, 0.2, 0.2*84, 0.2*72);
+
 	/**
 	 * Passes its starting coordinate location on the board, its material value, and a boolean
 	 * which determines if the piece is part of the white or black pieces.
@@ -34,11 +44,7 @@ public class Rook extends Piece{
 		AffineTransform saveTransform = pane.getTransform();
 
 		try {
-			AffineTransform scaleMatrix = new AffineTransform();
-			scaleMatrix.scale(0.2, 0.2);
-			scaleMatrix.translate(84,72);
-
-			pane.setTransform(scaleMatrix);
+			pane.transform(SCALE);
 
 
 			// here
@@ -100,48 +106,23 @@ public class Rook extends Piece{
 
 
 	/**
-	 * Given the coordinate location the piece is attempting to move to, and the arrays of both 
-	 * player's pieces, this method will return true if the move is a legal move.
+	 * Returns the piece type used by the bitboard position.
 	 */
-	public boolean isLegal(int someX, int someY, Piece[] enemyPieces, Piece[] allyPieces){
-		boolean result = false;
+	public int getType(){
+		return Position.ROOK;
+	}
 
-		Piece[] allPieces = getAllPieces(enemyPieces, allyPieces);
-
-		int distance = Math.max(Math.abs(getX()-someX), Math.abs(getY()-someY));
-
-		if((getX() == someX) ^ (getY() == someY)){
-			result = super.isLegal(someX, someY, enemyPieces, allyPieces);
-			if(getX() == someX){
-				for(Piece piece: allPieces){
-					if(piece != null){
-
-						for(int i=1; i < Math.abs(distance); i++){
-							if(getY()-someY <0){
-								if(piece.isOn(someX, someY-i))
-									result = false;
-							}else
-								if(piece.isOn(someX, someY+i))
-									result = false;
-						}
-					}
-				}
-
-			}else if (getY() == someY){
-				for(Piece piece: allPieces){
-					if(piece != null)
-						for(int i=1; i < Math.abs(distance); i++){
-							if(getX()-someX < 0){
-								if(piece.isOn(someX-i, someY))
-									result = false;
-							}else
-
-								if(piece.isOn(someX+i, someY))
-									result = false;
-						}
-				}
-			}
+	/**
+	 * Given the coordinate location the piece is attempting to move to and the bitboard
+	 * position, this method will return true if the move is a legal move.
+	 */
+	public boolean isLegal(int someX, int someY, Position position){
+		boolean result = false;
+		int from = getSquare(), to = Bitboards.square(someX, someY);
 
+		// The target must be reachable along a rank or file, with no piece in between
+		if((Attacks.rookAttacks(from, position.getOccupied()) & Bitboards.bit(to)) != 0){
+			result = super.isLegal(someX, someY, position);
 		}
 
 		return result;
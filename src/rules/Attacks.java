@@ -0,0 +1,212 @@
+package rules;
+
+/**
+ * The Attacks class answers "which squares does a piece on this square attack" for every piece
+ * type.  Knights, kings and pawns come straight from the tables in Bitboards.  Rooks and bishops
+ * use magic bitboards: the pieces standing on the squares a slider could be blocked by are
+ * multiplied by a magic number, and the top bits of the product index a table holding the
+ * attacks for exactly that set of blockers.  The tables are built once when the class is loaded,
+ * so each sliding attack afterwards costs one multiply, one shift and one array lookup.
+ */
+public final class Attacks {
+
+	/**
+	 * The squares whose occupancy can block a rook or bishop on each square.  The last square of
+	 * each ray is left out because a piece there never hides anything further along the ray.
+	 */
+	private static final long[] ROOK_MASKS = new long[64], BISHOP_MASKS = new long[64];
+
+	/**
+	 * The magic multipliers found for each square.
+	 */
+	private static final long[] ROOK_MAGICS = new long[64], BISHOP_MAGICS = new long[64];
+
+	/**
+	 * How far the product is shifted right for each square (64 minus the number of mask bits).
+	 */
+	private static final int[] ROOK_SHIFTS = new int[64], BISHOP_SHIFTS = new int[64];
+
+	/**
+	 * Where the block of each square starts in the shared attack table.
+	 */
+	private static final int[] ROOK_OFFSETS = new int[64], BISHOP_OFFSETS = new int[64];
+
+	/**
+	 * The attack table shared by all rook and bishop squares.
+	 */
+	private static final long[] TABLE;
+
+	/**
+	 * The rook and bishop directions as {file step, rank step}.
+	 */
+	private static final int[][] ROOK_DIRECTIONS = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}};
+	private static final int[][] BISHOP_DIRECTIONS = {{1, 1}, {1, -1}, {-1, 1}, {-1, -1}};
+
+	static{
+		int size = 0;
+		for(int sq=0; sq<64; sq++){
+			ROOK_MASKS[sq] = relevantMask(sq, ROOK_DIRECTIONS);
+			BISHOP_MASKS[sq] = relevantMask(sq, BISHOP_DIRECTIONS);
+			ROOK_OFFSETS[sq] = size;
+			size += 1 << Long.bitCount(ROOK_MASKS[sq]);
+		}
+		for(int sq=0; sq<64; sq++){
+			BISHOP_OFFSETS[sq] = size;
+			size += 1 << Long.bitCount(BISHOP_MASKS[sq]);
+		}
+		TABLE = new long[size];
+
+		// A fixed seed keeps the tables identical from one run to the next
+		long[] seed = {0x2545F4914F6CDD1DL};
+		for(int sq=0; sq<64; sq++){
+			ROOK_MAGICS[sq] = findMagic(sq, ROOK_MASKS[sq], ROOK_DIRECTIONS, ROOK_OFFSETS[sq], seed);
+			ROOK_SHIFTS[sq] = 64 - Long.bitCount(ROOK_MASKS[sq]);
+			BISHOP_MAGICS[sq] = findMagic(sq, BISHOP_MASKS[sq], BISHOP_DIRECTIONS, BISHOP_OFFSETS[sq], seed);
+			BISHOP_SHIFTS[sq] = 64 - Long.bitCount(BISHOP_MASKS[sq]);
+		}
+	}
+
+	/**
+	 * This class only holds static tables.
+	 */
+	private Attacks(){
+	}
+
+	/**
+	 * Returns the squares a rook on the square attacks given the occupied squares.
+	 */
+	public static long rookAttacks(int square, long occupied){
+		return TABLE[ROOK_OFFSETS[square] +
+				(int) (((occupied & ROOK_MASKS[square]) * ROOK_MAGICS[square]) >>> ROOK_SHIFTS[square])];
+	}
+
+	/**
+	 * Returns the squares a bishop on the square attacks given the occupied squares.
+	 */
+	public static long bishopAttacks(int square, long occupied){
+		return TABLE[BISHOP_OFFSETS[square] +
+				(int) (((occupied & BISHOP_MASKS[square]) * BISHOP_MAGICS[square]) >>> BISHOP_SHIFTS[square])];
+	}
+
+	/**
+	 * Returns the squares a queen on the square attacks given the occupied squares.
+	 */
+	public static long queenAttacks(int square, long occupied){
+		return rookAttacks(square, occupied) | bishopAttacks(square, occupied);
+	}
+
+	/**
+	 * Returns the squares attacked by a piece of the given color and type standing on a square.
+	 * Pawns only attack diagonally, so their pushes are not included.
+	 */
+	public static long attacksFrom(int square, int color, int type, long occupied){
+		switch(type){
+		case Position.PAWN:
+			return Bitboards.PAWN_ATTACKS[color][square];
+		case Position.KNIGHT:
+			return Bitboards.KNIGHT_ATTACKS[square];
+		case Position.BISHOP:
+			return bishopAttacks(square, occupied);
+		case Position.ROOK:
+			return rookAttacks(square, occupied);
+		case Position.QUEEN:
+			return queenAttacks(square, occupied);
+		default:
+			return Bitboards.KING_ATTACKS[square];
+		}
+	}
+
+	/**
+	 * Builds the blocker mask of a square: every ray square except the one on the edge.
+	 */
+	private static long relevantMask(int square, int[][] directions){
+		long mask = 0;
+		for(int[] direction: directions){
+			int f = (square & 7) + direction[0], r = (square >>> 3) + direction[1];
+			while(inside(f + direction[0], r + direction[1])){
+				mask |= 1L << (r*8 + f);
+				f += direction[0];
+				r += direction[1];
+			}
+		}
+		return mask;
+	}
+
+	/**
+	 * Walks each ray from the square until it leaves the board or hits an occupied square.
+	 * Only used while building the tables.
+	 */
+	private static long slowAttacks(int square, long occupied, int[][] directions){
+		long attacks = 0;
+		for(int[] direction: directions){
+			int f = (square & 7) + direction[0], r = (square >>> 3) + direction[1];
+			while(inside(f, r)){
+				long bit = 1L << (r*8 + f);
+				attacks |= bit;
+				if((occupied & bit) != 0)
+					break;
+				f += direction[0];
+				r += direction[1];
+			}
+		}
+		return attacks;
+	}
+
+	/**
+	 * Tries random sparse numbers until one maps every blocker subset of the mask to a slot
+	 * that holds the right attacks, then leaves those attacks in the table.
+	 */
+	private static long findMagic(int square, long mask, int[][] directions, int offset, long[] seed){
+		int bits = Long.bitCount(mask);
+		int count = 1 << bits;
+		long[] subsets = new long[count], attacks = new long[count];
+		int[] used = new int[count];
+
+		// Enumerate every subset of the mask with the carry-rippler trick
+		long subset = 0;
+		for(int i=0; i<count; i++){
+			subsets[i] = subset;
+			attacks[i] = slowAttacks(square, subset, directions);
+			subset = (subset - mask) & mask;
+		}
+
+		for(int attempt=1; ; attempt++){
+			long magic = random(seed) & random(seed) & random(seed);
+			if(Long.bitCount((mask * magic) >>> 56) < 6)
+				continue;
+
+			boolean failed = false;
+			for(int i=0; i<count && !failed; i++){
+				int index = (int) ((subsets[i] * magic) >>> (64 - bits));
+				if(used[index] != attempt){
+					used[index] = attempt;
+					TABLE[offset + index] = attacks[i];
+				}
+				else if(TABLE[offset + index] != attacks[i])
+					failed = true;
+			}
+			if(!failed)
+				return magic;
+		}
+	}
+
+	/**
+	 * A xorshift random number generator.
+	 */
+	private static long random(long[] seed){
+		long x = seed[0];
+		x ^= x >>> 12;
+		x ^= x << 25;
+		x ^= x >>> 27;
+		seed[0] = x;
+		return x * 0x2545F4914F6CDD1DL;
+	}
+
+	/**
+	 * Returns true if the file and rank (both 0 to 7) are on the board.
+	 */
+	private static boolean inside(int file, int rank){
+		return file >= 0 && file < 8 && rank >= 0 && rank < 8;
+	}
+
+}  // End Attacks
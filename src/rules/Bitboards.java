@@ -0,0 +1,160 @@
+package rules;
+
+/**
+ * The Bitboards class holds the constants and lookup tables used by the Position class.
+ * A bitboard is a long where each of the 64 bits stands for one square of the board, so a
+ * whole set of squares can be tested or combined with a single mask operation instead of
+ * looping over arrays of pieces.
+ *
+ * Squares are numbered 0 (a1) to 63 (h8), rank by rank.  The rest of the game counts x from
+ * 1 to 8 starting on the king side (the white king starts on x = 4), so x = 1 is the h-file
+ * and x = 8 is the a-file.  The square(), xOf() and yOf() methods convert between the two.
+ */
+public final class Bitboards {
+
+	/**
+	 * Masks for the first and last file and for every rank.
+	 */
+	public static final long FILE_A = 0x0101010101010101L, FILE_H = FILE_A << 7;
+	public static final long RANK_1 = 0xFFL, RANK_2 = RANK_1 << 8, RANK_4 = RANK_1 << 24,
+			RANK_5 = RANK_1 << 32, RANK_7 = RANK_1 << 48, RANK_8 = RANK_1 << 56;
+
+	/**
+	 * Squares a knight or king standing on a given square attacks.
+	 */
+	public static final long[] KNIGHT_ATTACKS = new long[64], KING_ATTACKS = new long[64];
+
+	/**
+	 * Squares a pawn of the given color (index 0 for white, 1 for black) attacks from a square.
+	 */
+	public static final long[][] PAWN_ATTACKS = new long[2][64];
+
+	/**
+	 * Squares a rook or bishop could reach from a given square on an empty board.
+	 */
+	public static final long[] ROOK_RAYS = new long[64], BISHOP_RAYS = new long[64];
+
+	/**
+	 * The squares strictly between two squares if they share a rank, file or diagonal, and
+	 * 0 otherwise.
+	 */
+	public static final long[][] BETWEEN = new long[64][64];
+
+	/**
+	 * The full rank, file or diagonal running through two squares, or 0 if they are not aligned.
+	 */
+	public static final long[][] LINE = new long[64][64];
+
+	/**
+	 * The 8 directions a queen can move in, as {file step, rank step}.  The first 4 are the
+	 * rook directions and the last 4 are the bishop directions.
+	 */
+	private static final int[][] DIRECTIONS = {{1, 0}, {-1, 0}, {0, 1}, {0, -1},
+			{1, 1}, {1, -1}, {-1, 1}, {-1, -1}};
+
+	static{
+		int[][] knightSteps = {{1, 2}, {2, 1}, {2, -1}, {1, -2}, {-1, -2}, {-2, -1}, {-2, 1}, {-1, 2}};
+
+		for(int sq=0; sq<64; sq++){
+			int file = sq & 7, rank = sq >>> 3;
+
+			for(int[] step: knightSteps)
+				KNIGHT_ATTACKS[sq] |= bitAt(file + step[0], rank + step[1]);
+
+			for(int[] step: DIRECTIONS)
+				KING_ATTACKS[sq] |= bitAt(file + step[0], rank + step[1]);
+
+			PAWN_ATTACKS[0][sq] = bitAt(file - 1, rank + 1) | bitAt(file + 1, rank + 1);
+			PAWN_ATTACKS[1][sq] = bitAt(file - 1, rank - 1) | bitAt(file + 1, rank - 1);
+
+			for(int d=0; d<DIRECTIONS.length; d++){
+				long ray = 0;
+				int f = file + DIRECTIONS[d][0], r = rank + DIRECTIONS[d][1];
+				while(onBoard(f, r)){
+					int target = r*8 + f;
+					BETWEEN[sq][target] = ray;
+					ray |= 1L << target;
+					f += DIRECTIONS[d][0];
+					r += DIRECTIONS[d][1];
+				}
+				if(d < 4)
+					ROOK_RAYS[sq] |= ray;
+				else
+					BISHOP_RAYS[sq] |= ray;
+			}
+		}
+
+		// A line is both rays through the two squares plus the squares themselves
+		for(int a=0; a<64; a++){
+			for(int b=0; b<64; b++){
+				if((ROOK_RAYS[a] & (1L << b)) != 0)
+					LINE[a][b] = (ROOK_RAYS[a] & ROOK_RAYS[b]) | (1L << a) | (1L << b);
+				else if((BISHOP_RAYS[a] & (1L << b)) != 0)
+					LINE[a][b] = (BISHOP_RAYS[a] & BISHOP_RAYS[b]) | (1L << a) | (1L << b);
+			}
+		}
+	}
+
+	/**
+	 * This class only holds static tables.
+	 */
+	private Bitboards(){
+	}
+
+	/**
+	 * Returns the square index for the game's coordinate pair (both between 1 and 8).
+	 */
+	public static int square(int x, int y){
+		return (y - 1)*8 + (8 - x);
+	}
+
+	/**
+	 * Returns the game's X coordinate of a square.
+	 */
+	public static int xOf(int square){
+		return 8 - (square & 7);
+	}
+
+	/**
+	 * Returns the game's Y coordinate of a square.
+	 */
+	public static int yOf(int square){
+		return (square >>> 3) + 1;
+	}
+
+	/**
+	 * Returns a bitboard with only the given square set.
+	 */
+	public static long bit(int square){
+		return 1L << square;
+	}
+
+	/**
+	 * Returns a bitboard with only the square at the game's coordinate pair set.
+	 */
+	public static long bit(int x, int y){
+		return 1L << square(x, y);
+	}
+
+	/**
+	 * Returns the index of the lowest square set in a non-empty bitboard.
+	 */
+	public static int first(long bitboard){
+		return Long.numberOfTrailingZeros(bitboard);
+	}
+
+	/**
+	 * Returns true if the file and rank (both 0 to 7) are on the board.
+	 */
+	private static boolean onBoard(int file, int rank){
+		return file >= 0 && file < 8 && rank >= 0 && rank < 8;
+	}
+
+	/**
+	 * Returns the bitboard of a file and rank, or 0 if they are off the board.
+	 */
+	private static long bitAt(int file, int rank){
+		return onBoard(file, rank) ? 1L << (rank*8 + file) : 0;
+	}
+
+}  // End Bitboards
@@ -0,0 +1,258 @@
+package rules;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The Fen class reads and writes positions in Forsyth-Edwards Notation, the standard one line
+ * description of a chess position such as
+ * "rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1".
+ * The text is read one character at a time straight into an existing Position, either from a
+ * CharSequence or from the bytes of a ByteBuffer, so reading a file of positions makes no
+ * objects at all.
+ */
+public final class Fen {
+
+	/**
+	 * The starting position.
+	 */
+	public static final String START = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+	/**
+	 * The piece letters in Position piece type order.
+	 */
+	private static final String PIECE_LETTERS = "pnbrqk";
+
+	/**
+	 * This class only holds static methods.
+	 */
+	private Fen(){
+	}
+
+	/**
+	 * Clears the position and fills it from the FEN text: piece placement, side to move,
+	 * castling rights, en passant square, halfmove clock and fullmove number.  Missing
+	 * trailing fields keep their defaults.  Throws an IllegalArgumentException if the
+	 * placement is malformed, or the en passant square is not one a pawn has just passed
+	 * with a double push.
+	 */
+	public static void parse(CharSequence fen, Position position){
+		parse(fen, null, 0, fen.length(), position);
+	}
+
+	/**
+	 * The same as parse() above, reading the FEN from the buffer's position up to the end of
+	 * the line or the buffer's limit.  The buffer's position is left at the start of the next
+	 * line, so a file of one FEN per line can be read with repeated calls.
+	 */
+	public static void parse(ByteBuffer fen, Position position){
+		fen.position(parse(null, fen, fen.position(), fen.limit(), position));
+	}
+
+	/**
+	 * Reads the FEN from index i of either the text or the bytes, whichever is not null, and
+	 * returns the index after the end of its line.
+	 */
+	private static int parse(CharSequence text, ByteBuffer bytes, int i, int length, Position position){
+		position.clear();
+		position.setCastlingRights(0);
+
+		// The FEN ends at the end of the line
+		int end = i;
+		while(end < length && charAt(text, bytes, end) != '\n' && charAt(text, bytes, end) != '\r')
+			end++;
+		int next = end;
+		if(next < length && charAt(text, bytes, next) == '\r')
+			next++;
+		if(next < length && charAt(text, bytes, next) == '\n')
+			next++;
+		i = skipSpaces(text, bytes, i, end);
+
+		// Piece placement, from rank 8 down to rank 1
+		int rank = 7, file = 0;
+		for(; i < end; i++){
+			int c = charAt(text, bytes, i);
+			if(c == ' ')
+				break;
+			if(c == '/'){
+				if(file != 8)
+					throw badPlacement(text, i);
+				rank--;
+				file = 0;
+			}
+			else if(c >= '1' && c <= '8')
+				file += c - '0';
+			else{
+				int type = PIECE_LETTERS.indexOf(Character.toLowerCase(c));
+				if(type < 0 || file > 7 || rank < 0)
+					throw badPlacement(text, i);
+				position.place(rank*8 + file, Position.code(Character.isUpperCase(c) ? Position.WHITE : Position.BLACK, type));
+				file++;
+			}
+		}
+		if(rank != 0 || file != 8)
+			throw badPlacement(text, i);
+		position.updateAttacks(position.getOccupied());
+		i = skipSpaces(text, bytes, i, end);
+
+		// Side to move
+		if(i < end){
+			position.setSideToMove(charAt(text, bytes, i) == 'b' ? Position.BLACK : Position.WHITE);
+			i = skipSpaces(text, bytes, i + 1, end);
+		}
+
+		// Castling rights
+		int rights = 0;
+		for(; i < end && charAt(text, bytes, i) != ' '; i++){
+			switch(charAt(text, bytes, i)){
+			case 'K': rights |= Position.WHITE_KING_SIDE; break;
+			case 'Q': rights |= Position.WHITE_QUEEN_SIDE; break;
+			case 'k': rights |= Position.BLACK_KING_SIDE; break;
+			case 'q': rights |= Position.BLACK_QUEEN_SIDE; break;
+			default: break;
+			}
+		}
+		position.setCastlingRights(rights);
+		i = skipSpaces(text, bytes, i, end);
+
+		// En passant square
+		int fieldStart = i;
+		while(i < end && charAt(text, bytes, i) != ' ')
+			i++;
+		if(i > fieldStart && charAt(text, bytes, fieldStart) != '-')
+			position.setEnPassantSquare(enPassantSquare(text, bytes, fieldStart, i, position));
+		i = skipSpaces(text, bytes, i, end);
+
+		// Move counters
+		if(i < end && isDigit(charAt(text, bytes, i))){
+			int halfmoves = 0;
+			for(; i < end && isDigit(charAt(text, bytes, i)); i++)
+				halfmoves = halfmoves*10 + charAt(text, bytes, i) - '0';
+			position.setHalfmoveClock(halfmoves);
+			i = skipSpaces(text, bytes, i, end);
+		}
+		if(i < end && isDigit(charAt(text, bytes, i))){
+			int number = 0;
+			for(; i < end && isDigit(charAt(text, bytes, i)); i++)
+				number = number*10 + charAt(text, bytes, i) - '0';
+			position.setFullmoveNumber(Math.max(1, number));
+		}
+		return next;
+	}
+
+	/**
+	 * Appends the FEN of the position to the builder.
+	 */
+	public static void write(Position position, StringBuilder out){
+		for(int rank=7; rank>=0; rank--){
+			int empty = 0;
+			for(int file=0; file<8; file++){
+				int piece = position.getPiece(rank*8 + file);
+				if(piece == Position.NO_PIECE){
+					empty++;
+					continue;
+				}
+				if(empty > 0)
+					out.append((char) ('0' + empty));
+				empty = 0;
+				char letter = PIECE_LETTERS.charAt(Position.typeOf(piece));
+				out.append(Position.colorOf(piece) == Position.WHITE ? Character.toUpperCase(letter) : letter);
+			}
+			if(empty > 0)
+				out.append((char) ('0' + empty));
+			if(rank > 0)
+				out.append('/');
+		}
+
+		out.append(position.getSideToMove() == Position.WHITE ? " w " : " b ");
+
+		int rights = position.getCastlingRights();
+		if(rights == 0)
+			out.append('-');
+		if((rights & Position.WHITE_KING_SIDE) != 0)
+			out.append('K');
+		if((rights & Position.WHITE_QUEEN_SIDE) != 0)
+			out.append('Q');
+		if((rights & Position.BLACK_KING_SIDE) != 0)
+			out.append('k');
+		if((rights & Position.BLACK_QUEEN_SIDE) != 0)
+			out.append('q');
+
+		int epSquare = position.getEnPassantSquare();
+		if(epSquare < 0)
+			out.append(" -");
+		else
+			out.append(' ').append((char) ('a' + (epSquare & 7))).append((char) ('1' + (epSquare >>> 3)));
+
+		out.append(' ').append(position.getHalfmoveClock()).append(' ').append(position.getFullmoveNumber());
+	}
+
+	/**
+	 * Returns the FEN of the position.
+	 */
+	public static String toString(Position position){
+		StringBuilder out = new StringBuilder(90);
+		write(position, out);
+		return out.toString();
+	}
+
+	/**
+	 * Returns the en passant square written from index start to end, checking it is on the
+	 * 3rd rank after a white double push or the 6th after a black one, with the pawn which
+	 * made it in front of it and the square it passed and the square it left empty.
+	 */
+	private static int enPassantSquare(CharSequence text, ByteBuffer bytes, int start, int end, Position position){
+		int file = charAt(text, bytes, start) - 'a';
+		int rank = end - start == 2 ? charAt(text, bytes, start + 1) - '1' : -1;
+		int mover = position.getSideToMove(), pusher = 1 - mover;
+		if(file < 0 || file > 7 || rank != (mover == Position.WHITE ? 5 : 2))
+			throw badEnPassant(text, start);
+
+		int square = rank*8 + file;
+		int forward = pusher == Position.WHITE ? 8 : -8;
+		if(position.getPiece(square + forward) != Position.code(pusher, Position.PAWN)
+				|| position.getPiece(square) != Position.NO_PIECE
+				|| position.getPiece(square - forward) != Position.NO_PIECE)
+			throw badEnPassant(text, start);
+		return square;
+	}
+
+	/**
+	 * Returns the character at index i of either the text or the bytes.
+	 */
+	private static int charAt(CharSequence text, ByteBuffer bytes, int i){
+		return text != null ? text.charAt(i) : bytes.get(i) & 0xFF;
+	}
+
+	/**
+	 * Returns true for the digits 0 to 9.
+	 */
+	private static boolean isDigit(int c){
+		return c >= '0' && c <= '9';
+	}
+
+	/**
+	 * Returns the index of the first character at or after i which is not a space.
+	 */
+	private static int skipSpaces(CharSequence text, ByteBuffer bytes, int i, int end){
+		while(i < end && charAt(text, bytes, i) == ' ')
+			i++;
+		return i;
+	}
+
+	/**
+	 * Returns the exception thrown for an en passant square no pawn can have just passed.
+	 */
+	private static IllegalArgumentException badEnPassant(CharSequence text, int i){
+		return new IllegalArgumentException("Bad FEN en passant square at character " + i
+				+ (text != null ? ": " + text : ""));
+	}
+
+	/**
+	 * Returns the exception thrown for a malformed piece placement.
+	 */
+	private static IllegalArgumentException badPlacement(CharSequence text, int i){
+		return new IllegalArgumentException("Bad FEN placement at character " + i
+				+ (text != null ? ": " + text : ""));
+	}
+
+}  // End Fen
@@ -0,0 +1,158 @@
+package rules;
+
+/**
+ * The Move class packs a move into the low 16 bits of an int so moves can be stored in plain
+ * int arrays: bits 0-5 hold the square the piece leaves, bits 6-11 the square it moves to, and
+ * bits 12-15 a flag telling what kind of move it is.  A promotion flag also says which piece
+ * the pawn becomes.  The value 0 is never a legal move and is used for "no move".
+ */
+public final class Move {
+
+	/**
+	 * The flags stored in the top 4 bits.  Every flag with the CAPTURE bit set takes a piece and
+	 * every flag with the PROMOTION bit set promotes a pawn to the piece type (flag & 3) + 1.
+	 */
+	public static final int QUIET = 0, DOUBLE_PUSH = 1, KING_CASTLE = 2, QUEEN_CASTLE = 3,
+			CAPTURE = 4, EN_PASSANT = 5, PROMOTION = 8;
+
+	/**
+	 * The value used for "no move".
+	 */
+	public static final int NONE = 0;
+
+	/**
+	 * This class only holds static helpers.
+	 */
+	private Move(){
+	}
+
+	/**
+	 * Packs the two squares and a flag into a move.
+	 */
+	public static int encode(int from, int to, int flags){
+		return from | (to << 6) | (flags << 12);
+	}
+
+	/**
+	 * Returns the promotion flags for a promotion to the given piece type, with or without
+	 * a capture.
+	 */
+	public static int promotionFlags(int type, boolean capture){
+		return PROMOTION | (capture ? CAPTURE : 0) | (type - 1);
+	}
+
+	/**
+	 * Returns the square the piece leaves.
+	 */
+	public static int from(int move){
+		return move & 63;
+	}
+
+	/**
+	 * Returns the square the piece moves to.
+	 */
+	public static int to(int move){
+		return (move >>> 6) & 63;
+	}
+
+	/**
+	 * Returns the flags of the move.
+	 */
+	public static int flags(int move){
+		return (move >>> 12) & 15;
+	}
+
+	/**
+	 * Returns true if the move takes a piece, including en passant.
+	 */
+	public static boolean isCapture(int move){
+		return (move & (CAPTURE << 12)) != 0;
+	}
+
+	/**
+	 * Returns true if the move promotes a pawn.
+	 */
+	public static boolean isPromotion(int move){
+		return (move & (PROMOTION << 12)) != 0;
+	}
+
+	/**
+	 * Returns the piece type a promotion turns the pawn into.
+	 */
+	public static int promotionType(int move){
+		return ((move >>> 12) & 3) + 1;
+	}
+
+	/**
+	 * Returns true if the move is a castle on either side.
+	 */
+	public static boolean isCastle(int move){
+		int flags = flags(move);
+		return flags == KING_CASTLE || flags == QUEEN_CASTLE;
+	}
+
+	/**
+	 * Returns the move in coordinate notation, such as "e2e4" or "e7e8q".
+	 */
+	public static String toString(int move){
+		StringBuilder text = new StringBuilder(5);
+		write(move, text);
+		return text.toString();
+	}
+
+	/**
+	 * Appends the move in coordinate notation to the builder.
+	 */
+	public static void write(int move, StringBuilder out){
+		if(move == NONE){
+			out.append("0000");
+			return;
+		}
+		out.append((char) ('a' + (from(move) & 7))).append((char) ('1' + (from(move) >>> 3)));
+		out.append((char) ('a' + (to(move) & 7))).append((char) ('1' + (to(move) >>> 3)));
+		if(isPromotion(move))
+			out.append("nbrq".charAt(promotionType(move) - 1));
+	}
+
+	/**
+	 * Returns the legal move of the position written in coordinate notation in text[start]
+	 * to text[end - 1], such as "e2e4" or "e7e8q", or NONE if there is none.  A promotion
+	 * without a piece letter promotes to a queen.  The legal moves are generated into the
+	 * buffer.
+	 */
+	public static int parse(CharSequence text, int start, int end, Position position, int[] buffer){
+		int length = end - start;
+		if(length != 4 && length != 5)
+			return NONE;
+		int from = square(text.charAt(start), text.charAt(start + 1));
+		int to = square(text.charAt(start + 2), text.charAt(start + 3));
+		int promotionType = length == 5 ? "nbrq".indexOf(Character.toLowerCase(text.charAt(start + 4))) + 1 : Position.QUEEN;
+		if(from < 0 || to < 0 || promotionType == 0)
+			return NONE;
+
+		int count = MoveGenerator.generate(position, buffer, 0);
+		for(int i=0; i<count; i++){
+			int move = buffer[i];
+			if(from(move) == from && to(move) == to && (!isPromotion(move) || promotionType(move) == promotionType))
+				return move;
+		}
+		return NONE;
+	}
+
+	/**
+	 * Returns the square named by a file and a rank letter, or -1.
+	 */
+	private static int square(char file, char rank){
+		if(file < 'a' || file > 'h' || rank < '1' || rank > '8')
+			return -1;
+		return (rank - '1')*8 + (file - 'a');
+	}
+
+	/**
+	 * Returns the name of a square, such as "e4".
+	 */
+	public static String squareName(int square){
+		return "" + (char) ('a' + (square & 7)) + (char) ('1' + (square >>> 3));
+	}
+
+}  // End Move
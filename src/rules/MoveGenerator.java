@@ -0,0 +1,271 @@
+package rules;
+
+/**
+ * The MoveGenerator class writes every legal move of the side to move into an int array
+ * supplied by the caller, using the encoding of the Move class.  Nothing is allocated while
+ * generating, so the same buffer can be reused for millions of positions.  A buffer of
+ * MAX_MOVES entries is always large enough for one position.
+ *
+ * Legal moves are found without trying them.  Once per position the pieces checking the king
+ * and the pieces pinned against it are worked out; then each piece's destinations are masked
+ * with the squares that answer the check and, for a pinned piece, with the line of its pin.
+ * King moves are masked with the squares the enemy attacks, from the position's attack maps.
+ * Only en passant, which can uncover an attack along a rank by removing two pawns at once, is
+ * checked on the bitboards with the occupancy the capture would leave.
+ */
+public final class MoveGenerator {
+
+	/**
+	 * No legal chess position has more moves than this.
+	 */
+	public static final int MAX_MOVES = 256;
+
+	/**
+	 * This class only holds static methods.
+	 */
+	private MoveGenerator(){
+	}
+
+	/**
+	 * Writes the legal moves of the side to move into the array starting at the given index,
+	 * and returns the index after the last move written.
+	 */
+	public static int generate(Position position, int[] moves, int start){
+		int us = position.getSideToMove(), them = 1 - us;
+		long own = position.getOccupancy(us), enemies = position.getOccupancy(them);
+		long occupied = position.getOccupied();
+		int king = position.getKingSquare(us);
+		int count = start;
+
+		// The squares a piece other than the king may move to: anywhere when not in check,
+		// onto the checker or between it and the king in single check, nowhere in double check
+		long checkers = 0, checkMask = ~0L, pinned = 0;
+		if(king >= 0){
+			checkers = position.attackersTo(king, occupied) & enemies;
+			if(checkers != 0)
+				checkMask = (checkers & (checkers - 1)) == 0
+						? checkers | Bitboards.BETWEEN[king][Bitboards.first(checkers)] : 0;
+			pinned = pinnedPieces(position, us, king);
+		}
+		long targets = ~own & checkMask;
+
+		if(checkMask != 0){
+			count = generatePawnMoves(position, moves, count, us, king, checkMask, pinned);
+
+			// A pinned knight can never move along its pin
+			long pieces = position.getPieces(us, Position.KNIGHT) & ~pinned;
+			while(pieces != 0){
+				int from = Bitboards.first(pieces);
+				count = addMoves(moves, count, from, Bitboards.KNIGHT_ATTACKS[from] & targets, enemies);
+				pieces &= pieces - 1;
+			}
+
+			pieces = position.getPieces(us, Position.BISHOP) | position.getPieces(us, Position.QUEEN);
+			while(pieces != 0){
+				int from = Bitboards.first(pieces);
+				count = addMoves(moves, count, from,
+						Attacks.bishopAttacks(from, occupied) & targets & pinRay(from, king, pinned), enemies);
+				pieces &= pieces - 1;
+			}
+
+			pieces = position.getPieces(us, Position.ROOK) | position.getPieces(us, Position.QUEEN);
+			while(pieces != 0){
+				int from = Bitboards.first(pieces);
+				count = addMoves(moves, count, from,
+						Attacks.rookAttacks(from, occupied) & targets & pinRay(from, king, pinned), enemies);
+				pieces &= pieces - 1;
+			}
+		}
+
+		if(king >= 0){
+			// The king may not stay on the line of a sliding checker, even on the squares the
+			// attack maps do not show because the king itself blocks them
+			long unsafe = position.getAttacked(them);
+			long sliders = checkers & ~position.getPieces(them, Position.PAWN) & ~position.getPieces(them, Position.KNIGHT);
+			while(sliders != 0){
+				int checker = Bitboards.first(sliders);
+				unsafe |= Bitboards.LINE[checker][king] & ~(1L << checker);
+				sliders &= sliders - 1;
+			}
+			count = addMoves(moves, count, king, Bitboards.KING_ATTACKS[king] & ~own & ~unsafe, enemies);
+			if(checkers == 0)
+				count = generateCastling(position, moves, count, us, king);
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the pieces of the given color pinned against their king: the only piece standing
+	 * between the king and an enemy slider that would otherwise attack it.
+	 */
+	private static long pinnedPieces(Position position, int us, int king){
+		int them = 1 - us;
+		long own = position.getOccupancy(us), occupied = position.getOccupied();
+		long enemies = position.getOccupancy(them);
+		long queens = position.getPieces(them, Position.QUEEN);
+
+		// Enemy sliders aimed at the king when only enemy pieces can block them
+		long snipers = (Attacks.rookAttacks(king, enemies) & (position.getPieces(them, Position.ROOK) | queens))
+				| (Attacks.bishopAttacks(king, enemies) & (position.getPieces(them, Position.BISHOP) | queens));
+		long pinned = 0;
+		while(snipers != 0){
+			long between = Bitboards.BETWEEN[king][Bitboards.first(snipers)] & occupied;
+			if((between != 0) && ((between & (between - 1)) == 0) && ((between & own) != 0))
+				pinned |= between;
+			snipers &= snipers - 1;
+		}
+		return pinned;
+	}
+
+	/**
+	 * Returns the squares a piece may move to without leaving its pin: the line through it
+	 * and the king if it is pinned, or every square.
+	 */
+	private static long pinRay(int from, int king, long pinned){
+		return (pinned & (1L << from)) != 0 ? Bitboards.LINE[king][from] : ~0L;
+	}
+
+	/**
+	 * Returns true if the side to move has at least one legal move.  Checkmate and stalemate
+	 * are told apart with Position.isInCheck().
+	 */
+	public static boolean hasLegalMove(Position position, int[] buffer){
+		return generate(position, buffer, 0) > 0;
+	}
+
+	/**
+	 * Adds a move from a square to each of the destinations, which are all legal.
+	 */
+	private static int addMoves(int[] moves, int count, int from, long destinations, long enemies){
+		while(destinations != 0){
+			int to = Bitboards.first(destinations);
+			moves[count++] = Move.encode(from, to, (enemies & (1L << to)) != 0 ? Move.CAPTURE : Move.QUIET);
+			destinations &= destinations - 1;
+		}
+		return count;
+	}
+
+	/**
+	 * Adds the pushes, double pushes, captures, en passant captures and promotions of all pawns
+	 * which land on the check mask and stay on their pin.
+	 */
+	private static int generatePawnMoves(Position position, int[] moves, int count, int us, int king,
+			long checkMask, long pinned){
+		long pawns = position.getPieces(us, Position.PAWN);
+		long enemies = position.getOccupancy(1 - us);
+		long empty = ~position.getOccupied();
+		int forward = us == Position.WHITE ? 8 : -8;
+		long startRank = us == Position.WHITE ? Bitboards.RANK_2 : Bitboards.RANK_7;
+		long lastRank = us == Position.WHITE ? Bitboards.RANK_8 : Bitboards.RANK_1;
+		int epSquare = position.getEnPassantSquare();
+
+		while(pawns != 0){
+			int from = Bitboards.first(pawns);
+			long bit = 1L << from;
+			long allowed = checkMask & pinRay(from, king, pinned);
+			int push = from + forward;
+
+			if((empty & (1L << push)) != 0){
+				if((allowed & (1L << push)) != 0){
+					if(((1L << push) & lastRank) != 0)
+						count = addPromotions(moves, count, from, push, false);
+					else
+						moves[count++] = Move.encode(from, push, Move.QUIET);
+				}
+				int doublePush = push + forward;
+				if(((bit & startRank) != 0) && ((empty & allowed & (1L << doublePush)) != 0))
+					moves[count++] = Move.encode(from, doublePush, Move.DOUBLE_PUSH);
+			}
+
+			long captures = Bitboards.PAWN_ATTACKS[us][from] & enemies & allowed;
+			while(captures != 0){
+				int to = Bitboards.first(captures);
+				if(((1L << to) & lastRank) != 0)
+					count = addPromotions(moves, count, from, to, true);
+				else
+					moves[count++] = Move.encode(from, to, Move.CAPTURE);
+				captures &= captures - 1;
+			}
+
+			if((epSquare >= 0) && ((Bitboards.PAWN_ATTACKS[us][from] & (1L << epSquare)) != 0)
+					&& isEnPassantSafe(position, from, epSquare, epSquare - forward, king))
+				moves[count++] = Move.encode(from, epSquare, Move.EN_PASSANT);
+
+			pawns &= pawns - 1;
+		}
+		return count;
+	}
+
+	/**
+	 * Adds the 4 promotions of a pawn move, queen first.
+	 */
+	private static int addPromotions(int[] moves, int count, int from, int to, boolean capture){
+		for(int type=Position.QUEEN; type>=Position.KNIGHT; type--)
+			moves[count++] = Move.encode(from, to, Move.promotionFlags(type, capture));
+		return count;
+	}
+
+	/**
+	 * Adds the castling moves.  The king may not castle out of, through or into check, and
+	 * every square between the king and the rook must be empty.  The caller has already
+	 * found the king is not in check.
+	 */
+	private static int generateCastling(Position position, int[] moves, int count, int us, int king){
+		int rights = position.getCastlingRights();
+		int home = us == Position.WHITE ? 4 : 60;
+		int kingSide = us == Position.WHITE ? Position.WHITE_KING_SIDE : Position.BLACK_KING_SIDE;
+		int queenSide = us == Position.WHITE ? Position.WHITE_QUEEN_SIDE : Position.BLACK_QUEEN_SIDE;
+		long occupied = position.getOccupied();
+		long rooks = position.getPieces(us, Position.ROOK);
+		int them = 1 - us;
+
+		if((king != home) || ((rights & (kingSide | queenSide)) == 0))
+			return count;
+
+		if(((rights & kingSide) != 0) && ((rooks & (1L << (home + 3))) != 0)
+				&& ((Bitboards.BETWEEN[home][home + 3] & occupied) == 0)
+				&& !position.isAttacked(home + 1, them) && !position.isAttacked(home + 2, them))
+			moves[count++] = Move.encode(home, home + 2, Move.KING_CASTLE);
+
+		if(((rights & queenSide) != 0) && ((rooks & (1L << (home - 4))) != 0)
+				&& ((Bitboards.BETWEEN[home][home - 4] & occupied) == 0)
+				&& !position.isAttacked(home - 1, them) && !position.isAttacked(home - 2, them))
+			moves[count++] = Move.encode(home, home - 2, Move.QUEEN_CASTLE);
+
+		return count;
+	}
+
+	/**
+	 * Returns true if the en passant capture from one square to another, taking the pawn on
+	 * the captured square, leaves the king safe.  Checked on the occupancy the capture leaves,
+	 * since it clears two squares of the same rank at once.
+	 */
+	private static boolean isEnPassantSafe(Position position, int from, int to, int capturedSquare, int king){
+		if(king < 0)
+			return true;
+		long removed = 1L << capturedSquare;
+		long occupied = ((position.getOccupied() ^ (1L << from)) | (1L << to)) & ~removed;
+		return !isAttacked(position, king, 1 - position.getSideToMove(), occupied, removed);
+	}
+
+	/**
+	 * Returns true if the square is attacked by the given color with the given occupied
+	 * squares, ignoring any attacker standing on a removed square.
+	 */
+	private static boolean isAttacked(Position position, int square, int byColor, long occupied, long removed){
+		long keep = ~removed;
+		if((Bitboards.PAWN_ATTACKS[1 - byColor][square] & position.getPieces(byColor, Position.PAWN) & keep) != 0)
+			return true;
+		if((Bitboards.KNIGHT_ATTACKS[square] & position.getPieces(byColor, Position.KNIGHT) & keep) != 0)
+			return true;
+		if((Bitboards.KING_ATTACKS[square] & position.getPieces(byColor, Position.KING)) != 0)
+			return true;
+
+		long queens = position.getPieces(byColor, Position.QUEEN);
+		long rooks = (position.getPieces(byColor, Position.ROOK) | queens) & keep;
+		long bishops = (position.getPieces(byColor, Position.BISHOP) | queens) & keep;
+		return ((Attacks.rookAttacks(square, occupied) & rooks) != 0)
+				|| ((Attacks.bishopAttacks(square, occupied) & bishops) != 0);
+	}
+
+}  // End MoveGenerator
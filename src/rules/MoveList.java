@@ -0,0 +1,120 @@
+package rules;
+
+import java.util.Arrays;
+
+/**
+ * The MoveList class is a growable list of moves in the encoding of the Move class.  A move
+ * only needs 16 bits, so the list keeps each one in a short: a game of 80 moves takes 160
+ * bytes of array instead of 80 objects, and nothing is boxed when moves are added or read.
+ */
+public class MoveList {
+
+	/**
+	 * The moves, of which the first size are in use.
+	 */
+	private short[] moves;
+	private int size;
+
+	/**
+	 * The constructor creates an empty list with room for a typical game.
+	 */
+	public MoveList(){
+		this(128);
+	}
+
+	/**
+	 * The constructor creates an empty list with room for the given number of moves.
+	 */
+	public MoveList(int capacity){
+		moves = new short[Math.max(1, capacity)];
+	}
+
+	/**
+	 * Adds a move at the end of the list.
+	 */
+	public void add(int move){
+		if(size == moves.length)
+			moves = Arrays.copyOf(moves, size * 2);
+		moves[size++] = (short) move;
+	}
+
+	/**
+	 * Adds the moves in array[start] to array[end - 1], as written by MoveGenerator.generate().
+	 */
+	public void addAll(int[] array, int start, int end){
+		int needed = size + end - start;
+		if(needed > moves.length)
+			moves = Arrays.copyOf(moves, Math.max(needed, moves.length * 2));
+		for(int i=start; i<end; i++)
+			moves[size++] = (short) array[i];
+	}
+
+	/**
+	 * Returns the move at an index.
+	 */
+	public int get(int index){
+		if(index >= size)
+			throw new IndexOutOfBoundsException("Move " + index + " of " + size);
+		return moves[index] & 0xFFFF;
+	}
+
+	/**
+	 * Returns the last move, or Move.NONE if the list is empty.
+	 */
+	public int last(){
+		return size > 0 ? moves[size - 1] & 0xFFFF : Move.NONE;
+	}
+
+	/**
+	 * Removes the last move and returns it, or Move.NONE if the list is empty.
+	 */
+	public int removeLast(){
+		return size > 0 ? moves[--size] & 0xFFFF : Move.NONE;
+	}
+
+	/**
+	 * Returns true if the move is in the list.
+	 */
+	public boolean contains(int move){
+		short packed = (short) move;
+		for(int i=0; i<size; i++)
+			if(moves[i] == packed)
+				return true;
+		return false;
+	}
+
+	/**
+	 * Returns the number of moves in the list.
+	 */
+	public int size(){
+		return size;
+	}
+
+	/**
+	 * Returns true if the list has no moves.
+	 */
+	public boolean isEmpty(){
+		return size == 0;
+	}
+
+	/**
+	 * Removes every move, keeping the array for reuse.
+	 */
+	public void clear(){
+		size = 0;
+	}
+
+	/**
+	 * Returns the moves in coordinate notation separated by spaces, such as "e2e4 e7e5".
+	 */
+	public String toString(){
+		StringBuilder text = new StringBuilder(size * 5);
+		for(int i=0; i<size; i++){
+			if(i > 0)
+				text.append(' ');
+			text.append(Move.toString(get(i)));
+		}
+		return text.toString();
+	}
+
+}  // End MoveList
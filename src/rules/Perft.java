@@ -0,0 +1,96 @@
+package rules;
+
+/**
+ * The Perft class counts the leaf nodes of the legal move tree to a fixed depth ("performance
+ * test").  The counts for well known positions are published, so any difference shows a bug in
+ * the move rules, and the time taken gives the nodes per second of the move generator.
+ *
+ * Usage: java rules.Perft depth [fen]
+ * With no FEN the starting position is used.  The node count below each root move is printed
+ * first so a wrong total can be narrowed down to a single move.
+ */
+public class Perft {
+
+	/**
+	 * The position moves are made and unmade on.
+	 */
+	private final Position position = new Position();
+
+	/**
+	 * One move buffer shared by all plies; ply n writes its moves at n * MAX_MOVES.
+	 */
+	private final int[] moves;
+
+	/**
+	 * The constructor allocates everything a search to the given depth needs up front.
+	 */
+	public Perft(int maxDepth){
+		moves = new int[(maxDepth + 1) * MoveGenerator.MAX_MOVES];
+	}
+
+	/**
+	 * Returns the number of leaf nodes depth plies below the position.
+	 */
+	public long perft(Position root, int depth){
+		position.copyFrom(root);
+		return count(0, depth);
+	}
+
+	/**
+	 * Counts the leaves below the current position, which is ply moves below the root.  At
+	 * the last ply the moves are counted without being played.
+	 */
+	private long count(int ply, int depth){
+		int start = ply * MoveGenerator.MAX_MOVES;
+		int end = MoveGenerator.generate(position, moves, start);
+		if(depth <= 1)
+			return depth == 1 ? end - start : 1;
+
+		long nodes = 0;
+		for(int i=start; i<end; i++){
+			position.makeMove(moves[i]);
+			nodes += count(ply + 1, depth - 1);
+			position.unmakeMove();
+		}
+		return nodes;
+	}
+
+	/**
+	 * Prints the node count below each root move, then the total and the speed.
+	 */
+	public static void main(String[] args){
+		int depth = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+		Position root = new Position();
+		Fen.parse(args.length > 1 ? joinFrom(args, 1) : Fen.START, root);
+
+		Perft perft = new Perft(depth);
+		int[] rootMoves = new int[MoveGenerator.MAX_MOVES];
+		int count = MoveGenerator.generate(root, rootMoves, 0);
+
+		long start = System.nanoTime();
+		long total = 0;
+		for(int i=0; i<count; i++){
+			root.makeMove(rootMoves[i]);
+			long nodes = depth > 1 ? perft.perft(root, depth - 1) : 1;
+			root.unmakeMove();
+			System.out.println(Move.toString(rootMoves[i]) + ": " + nodes);
+			total += nodes;
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		System.out.println();
+		System.out.println("Nodes: " + total);
+		System.out.printf("Time: %.3f s, %.0f nodes/s%n", seconds, total / Math.max(seconds, 1e-9));
+	}
+
+	/**
+	 * Joins the command line arguments from an index on, since a FEN contains spaces.
+	 */
+	private static String joinFrom(String[] args, int from){
+		StringBuilder text = new StringBuilder();
+		for(int i=from; i<args.length; i++)
+			text.append(i > from ? " " : "").append(args[i]);
+		return text.toString();
+	}
+
+}  // End Perft
@@ -0,0 +1,99 @@
+package rules;
+
+/**
+ * The PieceSquare class holds the piece-square tables: a bonus or penalty in centipawns for
+ * each piece type on each square, which rewards central knights, advanced pawns, a sheltered
+ * king and so on.  Position adds them up as pieces are placed and taken, so the evaluation
+ * never has to visit every piece.
+ */
+public final class PieceSquare {
+
+	/**
+	 * The tables from white's point of view, indexed by square with a1 = 0.  Black pieces
+	 * use the square flipped vertically (square ^ 56).
+	 */
+	private static final int[][] TABLES = {
+		{	// pawn
+			  0,   0,   0,   0,   0,   0,   0,   0,
+			  5,  10,  10, -20, -20,  10,  10,   5,
+			  5,  -5, -10,   0,   0, -10,  -5,   5,
+			  0,   0,   0,  20,  20,   0,   0,   0,
+			  5,   5,  10,  25,  25,  10,   5,   5,
+			 10,  10,  20,  30,  30,  20,  10,  10,
+			 50,  50,  50,  50,  50,  50,  50,  50,
+			  0,   0,   0,   0,   0,   0,   0,   0},
+		{	// knight
+			-50, -40, -30, -30, -30, -30, -40, -50,
+			-40, -20,   0,   5,   5,   0, -20, -40,
+			-30,   5,  10,  15,  15,  10,   5, -30,
+			-30,   0,  15,  20,  20,  15,   0, -30,
+			-30,   5,  15,  20,  20,  15,   5, -30,
+			-30,   0,  10,  15,  15,  10,   0, -30,
+			-40, -20,   0,   0,   0,   0, -20, -40,
+			-50, -40, -30, -30, -30, -30, -40, -50},
+		{	// bishop
+			-20, -10, -10, -10, -10, -10, -10, -20,
+			-10,   5,   0,   0,   0,   0,   5, -10,
+			-10,  10,  10,  10,  10,  10,  10, -10,
+			-10,   0,  10,  10,  10,  10,   0, -10,
+			-10,   5,   5,  10,  10,   5,   5, -10,
+			-10,   0,   5,  10,  10,   5,   0, -10,
+			-10,   0,   0,   0,   0,   0,   0, -10,
+			-20, -10, -10, -10, -10, -10, -10, -20},
+		{	// rook
+			  0,   0,   0,   5,   5,   0,   0,   0,
+			 -5,   0,   0,   0,   0,   0,   0,  -5,
+			 -5,   0,   0,   0,   0,   0,   0,  -5,
+			 -5,   0,   0,   0,   0,   0,   0,  -5,
+			 -5,   0,   0,   0,   0,   0,   0,  -5,
+			 -5,   0,   0,   0,   0,   0,   0,  -5,
+			  5,  10,  10,  10,  10,  10,  10,   5,
+			  0,   0,   0,   0,   0,   0,   0,   0},
+		{	// queen
+			-20, -10, -10,  -5,  -5, -10, -10, -20,
+			-10,   0,   5,   0,   0,   0,   0, -10,
+			-10,   5,   5,   5,   5,   5,   0, -10,
+			  0,   0,   5,   5,   5,   5,   0,  -5,
+			 -5,   0,   5,   5,   5,   5,   0,  -5,
+			-10,   0,   5,   5,   5,   5,   0, -10,
+			-10,   0,   0,   0,   0,   0,   0, -10,
+			-20, -10, -10,  -5,  -5, -10, -10, -20},
+		{	// king
+			 20,  30,  10,   0,   0,  10,  30,  20,
+			 20,  20,   0,   0,   0,   0,  20,  20,
+			-10, -20, -20, -20, -20, -20, -20, -10,
+			-20, -30, -30, -40, -40, -30, -30, -20,
+			-30, -40, -40, -50, -50, -40, -40, -30,
+			-30, -40, -40, -50, -50, -40, -40, -30,
+			-30, -40, -40, -50, -50, -40, -40, -30,
+			-30, -40, -40, -50, -50, -40, -40, -30}
+	};
+
+	/**
+	 * The bonus of each piece code (color*6 + type) on each square.
+	 */
+	private static final int[][] BONUS = new int[12][64];
+
+	static{
+		for(int type=Position.PAWN; type<=Position.KING; type++){
+			for(int square=0; square<64; square++){
+				BONUS[Position.code(Position.WHITE, type)][square] = TABLES[type][square];
+				BONUS[Position.code(Position.BLACK, type)][square] = TABLES[type][square ^ 56];
+			}
+		}
+	}
+
+	/**
+	 * This class only holds static methods.
+	 */
+	private PieceSquare(){
+	}
+
+	/**
+	 * Returns the bonus of the piece code standing on the square, for its own color.
+	 */
+	public static int bonus(int code, int square){
+		return BONUS[code][square];
+	}
+
+}  // End PieceSquare
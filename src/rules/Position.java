@@ -0,0 +1,701 @@
+package rules;
+
+import java.util.Arrays;
+
+/**
+ * The Position class is the bitboard model of the pieces on the board.  It keeps one long per
+ * color and piece type with a bit set for every square that piece stands on, plus one long per
+ * color and one for all occupied squares.  Questions such as "is this square empty" or "is this
+ * square attacked" are answered with a few mask operations instead of scanning the players'
+ * arrays of Piece objects, which are only kept to draw the pieces.
+ *
+ * A 64 entry array of piece codes is kept alongside the bitboards so the piece on a given square
+ * can be found without testing all 12 bitboards.
+ *
+ * The position also keeps attack maps: the squares attacked by the piece on each square, kept
+ * up to date as pieces are put, removed and moved, and from them the squares attacked by each
+ * color.  "Is this square attacked" and "is the king in check" are then one mask test.
+ */
+public class Position {
+
+	/**
+	 * Color indexes.
+	 */
+	public static final int WHITE = 0, BLACK = 1;
+
+	/**
+	 * Piece type indexes.
+	 */
+	public static final int PAWN = 0, KNIGHT = 1, BISHOP = 2, ROOK = 3, QUEEN = 4, KING = 5;
+
+	/**
+	 * The code stored in the board array for an empty square.  Other squares hold
+	 * color*6 + type.
+	 */
+	public static final int NO_PIECE = -1;
+
+	/**
+	 * The material value of each piece type, matching Piece.getValue().
+	 */
+	public static final int[] VALUES = {1, 3, 3, 5, 9, 0};
+
+	/**
+	 * Castling right bits.
+	 */
+	public static final int WHITE_KING_SIDE = 1, WHITE_QUEEN_SIDE = 2,
+			BLACK_KING_SIDE = 4, BLACK_QUEEN_SIDE = 8, ALL_CASTLING = 15;
+
+	/**
+	 * For each square, the castling rights that survive a move from or to it.  Moving a king
+	 * or a rook off its home square, or capturing a rook there, loses the matching rights.
+	 */
+	private static final int[] CASTLING_KEPT = new int[64];
+
+	static{
+		for(int sq=0; sq<64; sq++)
+			CASTLING_KEPT[sq] = ALL_CASTLING;
+		CASTLING_KEPT[4] &= ~(WHITE_KING_SIDE | WHITE_QUEEN_SIDE);	// e1
+		CASTLING_KEPT[7] &= ~WHITE_KING_SIDE;						// h1
+		CASTLING_KEPT[0] &= ~WHITE_QUEEN_SIDE;						// a1
+		CASTLING_KEPT[60] &= ~(BLACK_KING_SIDE | BLACK_QUEEN_SIDE);	// e8
+		CASTLING_KEPT[63] &= ~BLACK_KING_SIDE;						// h8
+		CASTLING_KEPT[56] &= ~BLACK_QUEEN_SIDE;						// a8
+	}
+
+	/**
+	 * One bitboard per piece code (color*6 + type).
+	 */
+	private final long[] pieceBoards = new long[12];
+
+	/**
+	 * One bitboard per color.
+	 */
+	private final long[] colorBoards = new long[2];
+
+	/**
+	 * Every occupied square.
+	 */
+	private long occupied;
+
+	/**
+	 * The piece code on each square, or NO_PIECE.
+	 */
+	private final int[] board = new int[64];
+
+	/**
+	 * For each color, the material value of its pieces and the sum of their PieceSquare
+	 * bonuses, changed by each piece placed or taken.
+	 */
+	private final int[] material = new int[2], pieceSquare = new int[2];
+
+	/**
+	 * The squares attacked by the piece on each square, or 0 for an empty square.  When a
+	 * square changes, its own entry and the entries of the sliding pieces whose attacks reach
+	 * it are computed again; no other piece can see the change.
+	 */
+	private final long[] squareAttacks = new long[64];
+
+	/**
+	 * The squares attacked by each color, the union of its pieces' squareAttacks.  Rebuilt
+	 * the first time it is needed after a change, since several changes usually come together.
+	 */
+	private final long[] attacked = new long[2];
+	private boolean attackedStale = false;
+
+	/**
+	 * The color whose turn it is.
+	 */
+	private int sideToMove = WHITE;
+
+	/**
+	 * The castling rights still available, as a combination of the castling right bits.
+	 */
+	private int castlingRights = ALL_CASTLING;
+
+	/**
+	 * The square a pawn could be captured on en passant, or -1.
+	 */
+	private int enPassantSquare = -1;
+
+	/**
+	 * The number of moves the undo stack has room for at first.  It grows when a longer game
+	 * is played, so any number of moves can be made before they are unmade.
+	 */
+	public static final int UNDO_CAPACITY = 2048;
+
+	/**
+	 * The undo stack.  For each move made, the move itself and the state it destroys: the
+	 * captured piece code plus 1 (bits 0-3), the castling rights (bits 4-7), the en passant
+	 * square plus 1 (bits 8-14) and the halfmove clock (bits 15-30).  The Zobrist key from
+	 * before the move is kept too, which also serves to find repetitions.
+	 */
+	private int[] undoMoves = new int[UNDO_CAPACITY], undoStates = new int[UNDO_CAPACITY];
+	private long[] undoKeys = new long[UNDO_CAPACITY];
+
+	/**
+	 * The Zobrist key of the position, kept up to date by every change.
+	 */
+	private long key;
+
+	/**
+	 * The exclusive or of the Zobrist numbers of the pawns alone, which only changes when a
+	 * pawn moves, is taken or promotes.  It keys the evaluation's cache of pawn structures.
+	 */
+	private long pawnKey;
+
+	/**
+	 * The number of moves since the last capture or pawn move.
+	 */
+	private int halfmoveClock = 0;
+
+	/**
+	 * The number of the full move being played, starting at 1 and increased after each
+	 * black move.
+	 */
+	private int fullmoveNumber = 1;
+
+	/**
+	 * The number of moves on the undo stack.
+	 */
+	private int ply = 0;
+
+	/**
+	 * The constructor creates an empty position.
+	 */
+	public Position(){
+		clear();
+	}
+
+	/**
+	 * Removes every piece from the position.
+	 */
+	public void clear(){
+		for(int i=0; i<pieceBoards.length; i++)
+			pieceBoards[i] = 0;
+		colorBoards[WHITE] = 0;
+		colorBoards[BLACK] = 0;
+		occupied = 0;
+		for(int i=0; i<board.length; i++){
+			board[i] = NO_PIECE;
+			squareAttacks[i] = 0;
+		}
+		attacked[WHITE] = 0;
+		attacked[BLACK] = 0;
+		attackedStale = false;
+		for(int color=WHITE; color<=BLACK; color++){
+			material[color] = 0;
+			pieceSquare[color] = 0;
+		}
+		sideToMove = WHITE;
+		castlingRights = ALL_CASTLING;
+		enPassantSquare = -1;
+		halfmoveClock = 0;
+		fullmoveNumber = 1;
+		ply = 0;
+		key = computeKey();
+		pawnKey = 0;
+	}
+
+	/**
+	 * Makes this position a copy of another one, including the moves on its undo stack.
+	 */
+	public void copyFrom(Position other){
+		System.arraycopy(other.pieceBoards, 0, pieceBoards, 0, pieceBoards.length);
+		System.arraycopy(other.colorBoards, 0, colorBoards, 0, colorBoards.length);
+		System.arraycopy(other.board, 0, board, 0, board.length);
+		System.arraycopy(other.squareAttacks, 0, squareAttacks, 0, squareAttacks.length);
+		System.arraycopy(other.attacked, 0, attacked, 0, attacked.length);
+		attackedStale = other.attackedStale;
+		System.arraycopy(other.material, 0, material, 0, material.length);
+		System.arraycopy(other.pieceSquare, 0, pieceSquare, 0, pieceSquare.length);
+		occupied = other.occupied;
+		sideToMove = other.sideToMove;
+		castlingRights = other.castlingRights;
+		enPassantSquare = other.enPassantSquare;
+		halfmoveClock = other.halfmoveClock;
+		fullmoveNumber = other.fullmoveNumber;
+		key = other.key;
+		pawnKey = other.pawnKey;
+		ply = other.ply;
+		ensureUndoCapacity(ply);
+		System.arraycopy(other.undoMoves, 0, undoMoves, 0, ply);
+		System.arraycopy(other.undoStates, 0, undoStates, 0, ply);
+		System.arraycopy(other.undoKeys, 0, undoKeys, 0, ply);
+	}
+
+	/**
+	 * Plays a legal move encoded by the Move class for the side to move: the piece is moved,
+	 * any captured piece removed, the rook moved when castling and the pawn replaced when
+	 * promoting.  The castling rights, en passant square and side to move are updated too.
+	 * Everything needed to take the move back is pushed on the undo stack, which grows when
+	 * it is full.
+	 */
+	public void makeMove(int move){
+		if(ply == undoMoves.length)
+			ensureUndoCapacity(ply + 1);
+		int from = Move.from(move), to = Move.to(move), flags = Move.flags(move);
+		int us = sideToMove;
+		int moved = typeOf(board[from]);
+		int captured;
+
+		undoKeys[ply] = key;
+		if(flags == Move.EN_PASSANT){
+			captured = remove(us == WHITE ? to - 8 : to + 8);
+			movePiece(from, to);
+		}
+		else
+			captured = movePiece(from, to);
+
+		undoMoves[ply] = move;
+		undoStates[ply] = (captured + 1) | (castlingRights << 4) | ((enPassantSquare + 1) << 8)
+				| (Math.min(halfmoveClock, 0xFFFF) << 15);
+		ply++;
+
+		if(flags == Move.KING_CASTLE)
+			movePiece(to + 1, to - 1);
+		else if(flags == Move.QUEEN_CASTLE)
+			movePiece(to - 2, to + 1);
+		else if(Move.isPromotion(move)){
+			remove(to);
+			put(to, us, Move.promotionType(move));
+		}
+
+		int rights = castlingRights & CASTLING_KEPT[from] & CASTLING_KEPT[to];
+		int epSquare = flags == Move.DOUBLE_PUSH ? (from + to) / 2 : -1;
+		key ^= Zobrist.CASTLING[castlingRights] ^ Zobrist.CASTLING[rights]
+				^ Zobrist.enPassant(enPassantSquare) ^ Zobrist.enPassant(epSquare) ^ Zobrist.BLACK_TO_MOVE;
+		castlingRights = rights;
+		enPassantSquare = epSquare;
+		sideToMove = 1 - us;
+		halfmoveClock = (moved == PAWN || captured != NO_PIECE) ? 0 : halfmoveClock + 1;
+		if(us == BLACK)
+			fullmoveNumber++;
+	}
+
+	/**
+	 * Takes back the last move made, restoring the position exactly as it was before it.
+	 */
+	public void unmakeMove(){
+		ply--;
+		int move = undoMoves[ply], state = undoStates[ply];
+		int from = Move.from(move), to = Move.to(move), flags = Move.flags(move);
+		int us = 1 - sideToMove;
+		int captured = (state & 15) - 1;
+
+		sideToMove = us;
+		castlingRights = (state >>> 4) & 15;
+		enPassantSquare = ((state >>> 8) & 127) - 1;
+		halfmoveClock = state >>> 15;
+		if(us == BLACK)
+			fullmoveNumber--;
+
+		if(Move.isPromotion(move)){
+			remove(to);
+			put(to, us, PAWN);
+		}
+		else if(flags == Move.KING_CASTLE)
+			movePiece(to - 1, to + 1);
+		else if(flags == Move.QUEEN_CASTLE)
+			movePiece(to + 1, to - 2);
+
+		movePiece(to, from);
+		if(captured != NO_PIECE){
+			int square = flags == Move.EN_PASSANT ? (us == WHITE ? to - 8 : to + 8) : to;
+			put(square, colorOf(captured), typeOf(captured));
+		}
+		key = undoKeys[ply];
+	}
+
+	/**
+	 * Returns the Zobrist key of the position.
+	 */
+	public long getKey(){
+		return key;
+	}
+
+	/**
+	 * Returns the pawn key of the position.
+	 */
+	public long getPawnKey(){
+		return pawnKey;
+	}
+
+	/**
+	 * Computes the pawn key from scratch, to check the incremental one.
+	 */
+	public long computePawnKey(){
+		long result = 0;
+		for(int color=WHITE; color<=BLACK; color++){
+			int code = code(color, PAWN);
+			for(long pawns = pieceBoards[code]; pawns != 0; pawns &= pawns - 1)
+				result ^= Zobrist.PIECES[code][Long.numberOfTrailingZeros(pawns)];
+		}
+		return result;
+	}
+
+	/**
+	 * Computes the Zobrist key from scratch.  Only needed to check the incremental key;
+	 * getKey() returns the same value at no cost.
+	 */
+	public long computeKey(){
+		long result = 0;
+		for(int sq=0; sq<64; sq++)
+			if(board[sq] != NO_PIECE)
+				result ^= Zobrist.PIECES[board[sq]][sq];
+		if(sideToMove == BLACK)
+			result ^= Zobrist.BLACK_TO_MOVE;
+		return result ^ Zobrist.CASTLING[castlingRights] ^ Zobrist.enPassant(enPassantSquare);
+	}
+
+	/**
+	 * Makes the undo stack at least large enough for the given number of moves, doubling it
+	 * so a long game only grows it a few times.
+	 */
+	private void ensureUndoCapacity(int plies){
+		if(plies <= undoMoves.length)
+			return;
+		int capacity = Math.max(plies, undoMoves.length * 2);
+		undoMoves = Arrays.copyOf(undoMoves, capacity);
+		undoStates = Arrays.copyOf(undoStates, capacity);
+		undoKeys = Arrays.copyOf(undoKeys, capacity);
+	}
+
+	/**
+	 * Returns true if the position already occurred since the last capture or pawn move,
+	 * among the moves on the undo stack.
+	 */
+	public boolean isRepetition(){
+		int limit = Math.min(halfmoveClock, ply);
+		for(int i=4; i<=limit; i+=2)
+			if(undoKeys[ply - i] == key)
+				return true;
+		return false;
+	}
+
+	/**
+	 * Returns the number of moves since the last capture or pawn move.
+	 */
+	public int getHalfmoveClock(){
+		return halfmoveClock;
+	}
+
+	/**
+	 * Sets the number of moves since the last capture or pawn move.
+	 */
+	public void setHalfmoveClock(int moves){
+		halfmoveClock = moves;
+	}
+
+	/**
+	 * Returns the number of the full move being played, starting at 1.
+	 */
+	public int getFullmoveNumber(){
+		return fullmoveNumber;
+	}
+
+	/**
+	 * Sets the number of the full move being played.
+	 */
+	public void setFullmoveNumber(int number){
+		fullmoveNumber = number;
+	}
+
+	/**
+	 * Returns the number of moves that can be unmade.
+	 */
+	public int getPly(){
+		return ply;
+	}
+
+	/**
+	 * Returns the last move made, or Move.NONE if there is none on the undo stack.
+	 */
+	public int getLastMove(){
+		return ply > 0 ? undoMoves[ply - 1] : Move.NONE;
+	}
+
+	/**
+	 * Returns the piece code for a color and a piece type.
+	 */
+	public static int code(int color, int type){
+		return color*6 + type;
+	}
+
+	/**
+	 * Returns the color of a piece code.
+	 */
+	public static int colorOf(int code){
+		return code / 6;
+	}
+
+	/**
+	 * Returns the piece type of a piece code.
+	 */
+	public static int typeOf(int code){
+		return code % 6;
+	}
+
+	/**
+	 * Places a piece of the given color and type on an empty square.
+	 */
+	public void put(int square, int color, int type){
+		place(square, code(color, type));
+		updateAttacks(1L << square);
+	}
+
+	/**
+	 * Removes whatever piece is on a square and returns its code, or NO_PIECE if the square
+	 * was empty.
+	 */
+	public int remove(int square){
+		int code = take(square);
+		if(code != NO_PIECE)
+			updateAttacks(1L << square);
+		return code;
+	}
+
+	/**
+	 * Moves the piece on one square to another, removing any piece already standing on the
+	 * destination.  Returns the code of the removed piece, or NO_PIECE.
+	 */
+	public int movePiece(int from, int to){
+		int captured = take(to);
+		place(to, take(from));
+		updateAttacks((1L << from) | (1L << to));
+		return captured;
+	}
+
+	/**
+	 * Places a piece code on an empty square, without updating the attack maps.  Fen places
+	 * every piece this way and then updates the maps once for all of them.
+	 */
+	void place(int square, int code){
+		long bit = 1L << square;
+		int color = colorOf(code);
+		pieceBoards[code] |= bit;
+		colorBoards[color] |= bit;
+		occupied |= bit;
+		board[square] = code;
+		key ^= Zobrist.PIECES[code][square];
+		if(typeOf(code) == PAWN)
+			pawnKey ^= Zobrist.PIECES[code][square];
+		material[color] += VALUES[typeOf(code)];
+		pieceSquare[color] += PieceSquare.bonus(code, square);
+	}
+
+	/**
+	 * Takes the piece off a square and returns its code, or NO_PIECE, without updating the
+	 * attack maps.
+	 */
+	private int take(int square){
+		int code = board[square];
+		if(code != NO_PIECE){
+			long bit = 1L << square;
+			int color = colorOf(code);
+			pieceBoards[code] &= ~bit;
+			colorBoards[color] &= ~bit;
+			occupied &= ~bit;
+			board[square] = NO_PIECE;
+			key ^= Zobrist.PIECES[code][square];
+			if(typeOf(code) == PAWN)
+				pawnKey ^= Zobrist.PIECES[code][square];
+			material[color] -= VALUES[typeOf(code)];
+			pieceSquare[color] -= PieceSquare.bonus(code, square);
+		}
+		return code;
+	}
+
+	/**
+	 * Brings the attack maps up to date after the given squares changed: the attacks of the
+	 * pieces now on them, and of every sliding piece whose attacks reached one of them.
+	 */
+	void updateAttacks(long changed){
+		for(long squares = changed; squares != 0; squares &= squares - 1){
+			int square = Bitboards.first(squares);
+			int code = board[square];
+			squareAttacks[square] = code == NO_PIECE ? 0 : Attacks.attacksFrom(square, colorOf(code), typeOf(code), occupied);
+		}
+
+		long sliders = (pieceBoards[code(WHITE, BISHOP)] | pieceBoards[code(WHITE, ROOK)] | pieceBoards[code(WHITE, QUEEN)]
+				| pieceBoards[code(BLACK, BISHOP)] | pieceBoards[code(BLACK, ROOK)] | pieceBoards[code(BLACK, QUEEN)]) & ~changed;
+		for(; sliders != 0; sliders &= sliders - 1){
+			int square = Bitboards.first(sliders);
+			if((squareAttacks[square] & changed) != 0){
+				int code = board[square];
+				squareAttacks[square] = Attacks.attacksFrom(square, colorOf(code), typeOf(code), occupied);
+			}
+		}
+		attackedStale = true;
+	}
+
+	/**
+	 * Returns the squares attacked by the pieces of one color.
+	 */
+	public long getAttacked(int color){
+		if(attackedStale){
+			for(int side=WHITE; side<=BLACK; side++){
+				long union = 0;
+				for(long pieces = colorBoards[side]; pieces != 0; pieces &= pieces - 1)
+					union |= squareAttacks[Bitboards.first(pieces)];
+				attacked[side] = union;
+			}
+			attackedStale = false;
+		}
+		return attacked[color];
+	}
+
+	/**
+	 * Returns the code of the piece on a square, or NO_PIECE.
+	 */
+	public int getPiece(int square){
+		return board[square];
+	}
+
+	/**
+	 * Returns the bitboard of the pieces of one color and type.
+	 */
+	public long getPieces(int color, int type){
+		return pieceBoards[code(color, type)];
+	}
+
+	/**
+	 * Returns the bitboard of every piece of one color.
+	 */
+	public long getOccupancy(int color){
+		return colorBoards[color];
+	}
+
+	/**
+	 * Returns the bitboard of every occupied square.
+	 */
+	public long getOccupied(){
+		return occupied;
+	}
+
+	/**
+	 * Returns the color whose turn it is.
+	 */
+	public int getSideToMove(){
+		return sideToMove;
+	}
+
+	/**
+	 * Sets the color whose turn it is.
+	 */
+	public void setSideToMove(int color){
+		if(color != sideToMove)
+			key ^= Zobrist.BLACK_TO_MOVE;
+		sideToMove = color;
+	}
+
+	/**
+	 * Returns the castling rights still available.
+	 */
+	public int getCastlingRights(){
+		return castlingRights;
+	}
+
+	/**
+	 * Sets the castling rights.
+	 */
+	public void setCastlingRights(int rights){
+		key ^= Zobrist.CASTLING[castlingRights] ^ Zobrist.CASTLING[rights];
+		castlingRights = rights;
+	}
+
+	/**
+	 * Returns the square a pawn could be captured on en passant, or -1.
+	 */
+	public int getEnPassantSquare(){
+		return enPassantSquare;
+	}
+
+	/**
+	 * Sets the en passant square, or -1 if there is none.
+	 */
+	public void setEnPassantSquare(int square){
+		key ^= Zobrist.enPassant(enPassantSquare) ^ Zobrist.enPassant(square);
+		enPassantSquare = square;
+	}
+
+	/**
+	 * Returns the square of the king of the given color, or -1 if it is not on the board.
+	 */
+	public int getKingSquare(int color){
+		long king = pieceBoards[code(color, KING)];
+		return king == 0 ? -1 : Bitboards.first(king);
+	}
+
+	/**
+	 * Returns the material value of all the pieces of one color.
+	 */
+	public int getMaterial(int color){
+		return material[color];
+	}
+
+	/**
+	 * Returns the sum of the PieceSquare bonuses of all the pieces of one color.
+	 */
+	public int getPieceSquare(int color){
+		return pieceSquare[color];
+	}
+
+	/**
+	 * Returns true if any piece of the given color attacks the square, from the attack maps.
+	 */
+	public boolean isAttacked(int square, int byColor){
+		return (getAttacked(byColor) & (1L << square)) != 0;
+	}
+
+	/**
+	 * The same as isAttacked(), worked out without the attack maps.  Each piece type is
+	 * looked up from the square outwards: a rook on the square would attack exactly the
+	 * squares the enemy rooks and queens could attack it from, and so on.  Kept to check the
+	 * maps against and to compare their speed.
+	 */
+	public boolean isAttackedByScan(int square, int byColor){
+		if((Bitboards.PAWN_ATTACKS[1 - byColor][square] & getPieces(byColor, PAWN)) != 0)
+			return true;
+		if((Bitboards.KNIGHT_ATTACKS[square] & getPieces(byColor, KNIGHT)) != 0)
+			return true;
+		if((Bitboards.KING_ATTACKS[square] & getPieces(byColor, KING)) != 0)
+			return true;
+
+		long queens = getPieces(byColor, QUEEN);
+		return ((Attacks.rookAttacks(square, occupied) & (getPieces(byColor, ROOK) | queens)) != 0)
+				|| ((Attacks.bishopAttacks(square, occupied) & (getPieces(byColor, BISHOP) | queens)) != 0);
+	}
+
+	/**
+	 * Returns every piece of either color attacking the square, with the sliding attacks
+	 * computed for the given occupied squares.
+	 */
+	public long attackersTo(int square, long occupied){
+		long rooks = pieceBoards[code(WHITE, ROOK)] | pieceBoards[code(BLACK, ROOK)]
+				| pieceBoards[code(WHITE, QUEEN)] | pieceBoards[code(BLACK, QUEEN)];
+		long bishops = pieceBoards[code(WHITE, BISHOP)] | pieceBoards[code(BLACK, BISHOP)]
+				| pieceBoards[code(WHITE, QUEEN)] | pieceBoards[code(BLACK, QUEEN)];
+
+		return (Bitboards.PAWN_ATTACKS[BLACK][square] & pieceBoards[code(WHITE, PAWN)])
+				| (Bitboards.PAWN_ATTACKS[WHITE][square] & pieceBoards[code(BLACK, PAWN)])
+				| (Bitboards.KNIGHT_ATTACKS[square] & (pieceBoards[code(WHITE, KNIGHT)] | pieceBoards[code(BLACK, KNIGHT)]))
+				| (Bitboards.KING_ATTACKS[square] & (pieceBoards[code(WHITE, KING)] | pieceBoards[code(BLACK, KING)]))
+				| (Attacks.rookAttacks(square, occupied) & rooks)
+				| (Attacks.bishopAttacks(square, occupied) & bishops);
+	}
+
+	/**
+	 * Returns the squares attacked by the piece standing on a square, or 0 if it is empty.
+	 */
+	public long attacksFrom(int square){
+		return squareAttacks[square];
+	}
+
+	/**
+	 * Returns true if the king of the given color is attacked by the other color.
+	 */
+	public boolean isInCheck(int color){
+		return (getAttacked(1 - color) & pieceBoards[code(color, KING)]) != 0;
+	}
+
+}  // End Position
@@ -0,0 +1,134 @@
+package rules;
+
+/**
+ * The StaticExchange class works out what a capture wins or loses once every piece which can
+ * join in has captured on the same square, without making any moves.  Each side recaptures
+ * with its least valuable attacker and may stop whenever going on would lose material, so the
+ * result is the material the capturing side can count on.  Pieces are taken off a copy of the
+ * occupied squares as they capture, which uncovers the rooks, bishops and queens lined up
+ * behind them.  Pins and checks are ignored.
+ *
+ * Values are those of Piece.getValue(), so a pawn is 1 and a queen 9.  No objects are made, so
+ * a search may call it for every capture it considers.
+ *
+ * java rules.StaticExchange [FEN]
+ */
+public final class StaticExchange {
+
+	/**
+	 * This class only holds static methods.
+	 */
+	private StaticExchange(){
+	}
+
+	/**
+	 * Returns the material the side to move wins by the move once the exchange on its target
+	 * square has played out: positive if it wins, 0 if it breaks even and negative if it
+	 * loses.  A quiet move scores what is lost if the piece moved is taken.  The move must be
+	 * legal in the position.
+	 */
+	public static int evaluate(Position position, int move){
+		int from = Move.from(move), to = Move.to(move);
+		if(Move.isCastle(move))
+			return 0;
+
+		int us = position.getSideToMove();
+		long occupied = position.getOccupied() ^ (1L << from);
+		int captured = position.getPiece(to);
+		int gain = captured == Position.NO_PIECE ? 0 : Position.VALUES[Position.typeOf(captured)];
+		if(Move.flags(move) == Move.EN_PASSANT){
+			occupied ^= 1L << (to + (us == Position.WHITE ? -8 : 8));
+			gain = Position.VALUES[Position.PAWN];
+		}
+
+		int onSquare = Position.VALUES[Position.typeOf(position.getPiece(from))];
+		if(Move.isPromotion(move)){
+			onSquare = Position.VALUES[Move.promotionType(move)];
+			gain += onSquare - Position.VALUES[Position.PAWN];
+		}
+		return gain - exchange(position, to, occupied, 1 - us, onSquare);
+	}
+
+	/**
+	 * Returns true if the move wins at least the given material once the exchange has played
+	 * out, for example 0 to tell captures which do not lose material from those which do.
+	 */
+	public static boolean isAtLeast(Position position, int move, int threshold){
+		return evaluate(position, move) >= threshold;
+	}
+
+	/**
+	 * Returns what the side gains, 0 or more, by capturing the piece worth onSquare on the
+	 * square with its least valuable attacker among the occupied squares, and letting the
+	 * exchange go on from there.  The side may always decline to capture.
+	 */
+	private static int exchange(Position position, int square, long occupied, int side, int onSquare){
+		long attackers = position.attackersTo(square, occupied) & occupied;
+		long own = attackers & position.getOccupancy(side);
+		if(own == 0)
+			return 0;
+
+		for(int type=Position.PAWN; type<=Position.KING; type++){
+			long candidates = own & position.getPieces(side, type);
+			if(candidates == 0)
+				continue;
+			long bit = candidates & -candidates;
+			if(type == Position.KING)		// the king may only take a piece nobody defends
+				return (attackers & ~own) == 0 ? onSquare : 0;
+
+			int gain = onSquare, value = Position.VALUES[type];
+			if(type == Position.PAWN && (square < 8 || square >= 56)){
+				value = Position.VALUES[Position.QUEEN];
+				gain += value - Position.VALUES[Position.PAWN];
+			}
+			return Math.max(0, gain - exchange(position, square, occupied ^ bit, 1 - side, value));
+		}
+		return 0;
+	}
+
+	/**
+	 * Prints the exchange value of every capture in the position of the FEN argument, or of a
+	 * busy middle game, and the time one evaluation takes compared with making and unmaking
+	 * the capture.
+	 */
+	public static void main(String[] args){
+		Position position = new Position();
+		Fen.parse(args.length > 0 ? String.join(" ", args)
+				: "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1", position);
+		int[] moves = new int[MoveGenerator.MAX_MOVES];
+		int count = MoveGenerator.generate(position, moves, 0);
+		int captures = 0;
+		for(int i=0; i<count; i++){
+			if(Move.isCapture(moves[i])){
+				System.out.printf("%-6s %3d%n", Move.toString(moves[i]), evaluate(position, moves[i]));
+				moves[captures++] = moves[i];
+			}
+		}
+		if(captures == 0)
+			return;
+
+		int rounds = 2000000 / captures, sum = 0;
+		for(int pass=0; pass<2; pass++){
+			long started = System.nanoTime();
+			for(int round=0; round<rounds; round++)
+				for(int i=0; i<captures; i++)
+					sum += evaluate(position, moves[i]);
+			long exchangeNanos = System.nanoTime() - started;
+
+			started = System.nanoTime();
+			for(int round=0; round<rounds; round++){
+				for(int i=0; i<captures; i++){
+					position.makeMove(moves[i]);
+					sum += position.getMaterial(Position.WHITE);
+					position.unmakeMove();
+				}
+			}
+			long makeNanos = System.nanoTime() - started;
+			System.out.printf("Exchange: %.1f ns  Make and unmake one capture: %.1f ns%n",
+					(double) exchangeNanos / rounds / captures, (double) makeNanos / rounds / captures);
+		}
+		if(sum == 42)
+			System.out.println();
+	}
+
+}  // End StaticExchange
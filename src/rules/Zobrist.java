@@ -0,0 +1,68 @@
+package rules;
+
+/**
+ * The Zobrist class holds the random numbers used to give each position a 64-bit key.  The key
+ * is the exclusive or of one number for every piece on every square, one for the side to move,
+ * one for the castling rights and one for the en passant file.  Since exclusive or undoes
+ * itself, a move changes the key by xoring in just the numbers of what it changed, and two
+ * positions with the same pieces, turn, rights and en passant file always get the same key.
+ */
+public final class Zobrist {
+
+	/**
+	 * One number per piece code (color*6 + type) and square.
+	 */
+	public static final long[][] PIECES = new long[12][64];
+
+	/**
+	 * Xored in when it is black's move.
+	 */
+	public static final long BLACK_TO_MOVE;
+
+	/**
+	 * One number per combination of castling right bits.
+	 */
+	public static final long[] CASTLING = new long[16];
+
+	/**
+	 * One number per file of the en passant square.
+	 */
+	public static final long[] EN_PASSANT = new long[8];
+
+	static{
+		// A fixed seed keeps keys identical from one run to the next, so they can be stored
+		long[] seed = {0x9E3779B97F4A7C15L};
+		for(long[] squares: PIECES)
+			for(int sq=0; sq<64; sq++)
+				squares[sq] = next(seed);
+		BLACK_TO_MOVE = next(seed);
+		for(int i=0; i<CASTLING.length; i++)
+			CASTLING[i] = next(seed);
+		for(int i=0; i<EN_PASSANT.length; i++)
+			EN_PASSANT[i] = next(seed);
+	}
+
+	/**
+	 * This class only holds static tables.
+	 */
+	private Zobrist(){
+	}
+
+	/**
+	 * Returns the number for an en passant square, or 0 if there is none.
+	 */
+	public static long enPassant(int square){
+		return square < 0 ? 0 : EN_PASSANT[square & 7];
+	}
+
+	/**
+	 * The splitmix64 generator.
+	 */
+	private static long next(long[] seed){
+		long z = (seed[0] += 0x9E3779B97F4A7C15L);
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+}  // End Zobrist
@@ -0,0 +1,431 @@
+package server;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.Iterator;
+
+import game.Game;
+import rules.Fen;
+import rules.Move;
+import rules.MoveGenerator;
+
+/**
+ * The GameServer class hosts many games at once in one JVM and plays them with clients over
+ * TCP on the loopback address, one command per line:
+ *
+ *   new [FEN]          starts a game, from the FEN if given     ok ID
+ *   move ID MOVE       plays a move such as e2e4 or e7e8q       ok, ok check, ok checkmate,
+ *                                                               ok stalemate or illegal
+ *   position ID        the position of the game                 ok FEN
+ *   resign ID          ends the game                            ok
+ *
+ * Anything else is answered with "error" and the reason.  A command which fails inside the
+ * server is answered with "error internal" and that client alone is disconnected.
+ *
+ * One thread serves every connection through a non-blocking Selector.  An idle game is kept
+ * as nothing but the ASCII bytes of its FEN, about 80 bytes, so tens of thousands of games
+ * cost a few megabytes.  A move sets a single reused Game up from the FEN and plays the move
+ * through Game.move(), and so through Player.checkMove() and the rules of the pieces, then
+ * stores the FEN of the new position.
+ *
+ * java server.GameServer [port]
+ */
+public class GameServer implements Runnable, Closeable {
+
+	/**
+	 * The port used when none is given.
+	 */
+	public static final int DEFAULT_PORT = 7777;
+
+	/**
+	 * The longest command line, and the room kept in a connection's output for one reply.
+	 */
+	private static final int MAX_LINE = 256, MAX_REPLY = 128;
+
+	/**
+	 * What the server listens and waits on.
+	 */
+	private final ServerSocketChannel server;
+	private final Selector selector;
+
+	/**
+	 * The FEN of every game by id, or null once the game is resigned.
+	 */
+	private byte[][] games = new byte[1024][];
+	private int nextId;
+
+	/**
+	 * The number of games which have not been resigned.
+	 */
+	private volatile int liveGames;
+
+	/**
+	 * Every move is played on this one game, set up from the stored FEN.
+	 */
+	private final Game game = new Game();
+	private final int[] moves = new int[MoveGenerator.MAX_MOVES];
+	private final StringBuilder text = new StringBuilder(MAX_REPLY);
+
+	/**
+	 * Set by close() to end run().
+	 */
+	private volatile boolean closed;
+
+	/**
+	 * The bytes read from and still to be written to one client.  The input is kept in the
+	 * buffer until a whole line has arrived.
+	 */
+	private static final class Connection {
+		final SocketChannel channel;
+		final ByteBuffer in = ByteBuffer.allocate(MAX_LINE), out = ByteBuffer.allocate(8 * MAX_REPLY);
+
+		Connection(SocketChannel channel){
+			this.channel = channel;
+		}
+	}
+
+	/**
+	 * The constructor listens on the given port of the loopback address; port 0 picks a free
+	 * one, told by getPort().
+	 */
+	public GameServer(int port) throws IOException{
+		selector = Selector.open();
+		server = ServerSocketChannel.open();
+		server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+		server.configureBlocking(false);
+		server.register(selector, SelectionKey.OP_ACCEPT);
+	}
+
+	/**
+	 * Serves the clients until close() is called.
+	 */
+	public void run(){
+		try{
+			while(!closed){
+				selector.select();
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while(keys.hasNext()){
+					SelectionKey key = keys.next();
+					keys.remove();
+					try{
+						if(key.isValid() && key.isAcceptable())
+							accept();
+						else if(key.isValid())
+							serve(key);
+					}catch(IOException e){
+						disconnect(key);
+					}catch(RuntimeException e){
+						fail(key, e);
+					}
+				}
+			}
+		}catch(IOException e){
+			System.err.println("Game server stopped: " + e);
+		}finally{
+			for(SelectionKey key: selector.keys())
+				disconnect(key);
+			try{
+				selector.close();
+			}catch(IOException e){
+				// Nothing more to release
+			}
+		}
+	}
+
+	/**
+	 * Accepts a waiting client.
+	 */
+	private void accept() throws IOException{
+		SocketChannel channel = server.accept();
+		if(channel == null)
+			return;
+		channel.configureBlocking(false);
+		channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+		channel.register(selector, SelectionKey.OP_READ, new Connection(channel));
+	}
+
+	/**
+	 * Reads what a client sent, answers every whole line there is room to answer and writes
+	 * as much of the answers as the socket takes.  While answers are waiting to be written
+	 * nothing more is read, so a client which does not read its replies cannot fill memory.
+	 */
+	private void serve(SelectionKey key) throws IOException{
+		Connection connection = (Connection) key.attachment();
+		if(key.isReadable() && connection.channel.read(connection.in) < 0){
+			disconnect(key);
+			return;
+		}
+		do{
+			answer(connection);
+			connection.out.flip();
+			connection.channel.write(connection.out);
+			connection.out.compact();
+		}while(connection.out.position() == 0 && hasLine(connection.in));
+		key.interestOps(connection.out.position() > 0 ? SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+	}
+
+	/**
+	 * Answers the whole lines in the connection's input while there is room for the replies,
+	 * and keeps the rest of the input for later.
+	 */
+	private void answer(Connection connection){
+		ByteBuffer in = connection.in;
+		int start = 0;
+		for(int i=0; i<in.position() && connection.out.remaining() >= MAX_REPLY; i++){
+			if(in.get(i) == '\n'){
+				command(in, start, i > start && in.get(i - 1) == '\r' ? i - 1 : i, connection.out);
+				start = i + 1;
+			}
+		}
+		if(start == 0 && !in.hasRemaining()){
+			reply(connection.out, "error line too long");
+			in.clear();
+			return;
+		}
+		in.flip();
+		in.position(start);
+		in.compact();
+	}
+
+	/**
+	 * Returns true if the input holds a whole line.
+	 */
+	private static boolean hasLine(ByteBuffer in){
+		for(int i=0; i<in.position(); i++)
+			if(in.get(i) == '\n')
+				return true;
+		return false;
+	}
+
+	/**
+	 * Carries out the command in in[start] to in[end - 1] and writes the reply.
+	 */
+	private void command(ByteBuffer in, int start, int end, ByteBuffer out){
+		int wordEnd = tokenEnd(in, start, end);
+		int idStart = skipSpaces(in, wordEnd, end), idEnd = tokenEnd(in, idStart, end);
+
+		if(isWord(in, start, wordEnd, "new")){
+			newGame(in, idStart, end, out);
+			return;
+		}
+
+		int id = parseId(in, idStart, idEnd);
+		byte[] fen = id >= 0 && id < nextId ? games[id] : null;
+		if(isWord(in, start, wordEnd, "move") || isWord(in, start, wordEnd, "position")
+				|| isWord(in, start, wordEnd, "resign")){
+			if(fen == null){
+				reply(out, "error no game");
+				return;
+			}
+		}
+		else{
+			reply(out, "error unknown command");
+			return;
+		}
+
+		if(isWord(in, start, wordEnd, "position")){
+			out.put((byte) 'o').put((byte) 'k').put((byte) ' ').put(fen).put((byte) '\n');
+		}
+		else if(isWord(in, start, wordEnd, "resign")){
+			games[id] = null;
+			liveGames--;
+			reply(out, "ok");
+		}
+		else{
+			int moveStart = skipSpaces(in, idEnd, end);
+			playMove(id, fen, in, moveStart, tokenEnd(in, moveStart, end), out);
+		}
+	}
+
+	/**
+	 * Starts a game from the starting position or the FEN in in[start] to in[end - 1].
+	 */
+	private void newGame(ByteBuffer in, int start, int end, ByteBuffer out){
+		try{
+			if(start == end)
+				game.reset();
+			else{
+				ByteBuffer fen = in.duplicate();
+				fen.limit(end);
+				fen.position(start);
+				game.setUp(fen);
+			}
+		}catch(IllegalArgumentException e){
+			reply(out, "error bad fen");
+			return;
+		}
+		if(nextId == games.length)
+			games = Arrays.copyOf(games, games.length * 2);
+		int id = nextId++;
+		games[id] = fenOf(game);
+		liveGames++;
+		text.setLength(0);
+		text.append("ok ").append(id);
+		reply(out, text);
+	}
+
+	/**
+	 * Plays the move in in[start] to in[end - 1] in the game with the given id and FEN.
+	 */
+	private void playMove(int id, byte[] fen, ByteBuffer in, int start, int end, ByteBuffer out){
+		game.setUp(ByteBuffer.wrap(fen));
+		text.setLength(0);
+		for(int i=start; i<end; i++)
+			text.append((char) in.get(i));
+		int move = Move.parse(text, 0, text.length(), game.getPosition(), moves);
+		if(!game.move(move)){
+			reply(out, "illegal");
+			return;
+		}
+		games[id] = fenOf(game);
+		if(game.isOver())
+			reply(out, game.isInCheck() ? "ok checkmate" : "ok stalemate");
+		else
+			reply(out, game.isInCheck() ? "ok check" : "ok");
+	}
+
+	/**
+	 * Returns the FEN of the game's position as ASCII bytes.
+	 */
+	private byte[] fenOf(Game game){
+		text.setLength(0);
+		Fen.write(game.getPosition(), text);
+		byte[] fen = new byte[text.length()];
+		for(int i=0; i<fen.length; i++)
+			fen[i] = (byte) text.charAt(i);
+		return fen;
+	}
+
+	/**
+	 * Writes the text and a line end to the output.
+	 */
+	private static void reply(ByteBuffer out, CharSequence text){
+		for(int i=0; i<text.length(); i++)
+			out.put((byte) text.charAt(i));
+		out.put((byte) '\n');
+	}
+
+	/**
+	 * Returns true if in[start] to in[end - 1] is the word.
+	 */
+	private static boolean isWord(ByteBuffer in, int start, int end, String word){
+		if(end - start != word.length())
+			return false;
+		for(int i=0; i<word.length(); i++)
+			if(in.get(start + i) != word.charAt(i))
+				return false;
+		return true;
+	}
+
+	/**
+	 * Returns the number in in[start] to in[end - 1], or -1 if it is not a game id.
+	 */
+	private static int parseId(ByteBuffer in, int start, int end){
+		if(start == end || end - start > 9)
+			return -1;
+		int id = 0;
+		for(int i=start; i<end; i++){
+			int c = in.get(i);
+			if(c < '0' || c > '9')
+				return -1;
+			id = id*10 + c - '0';
+		}
+		return id;
+	}
+
+	/**
+	 * Returns the index of the first space at or after start, or end.
+	 */
+	private static int tokenEnd(ByteBuffer in, int start, int end){
+		while(start < end && in.get(start) != ' ')
+			start++;
+		return start;
+	}
+
+	/**
+	 * Returns the index of the first character at or after start which is not a space, or end.
+	 */
+	private static int skipSpaces(ByteBuffer in, int start, int end){
+		while(start < end && in.get(start) == ' ')
+			start++;
+		return start;
+	}
+
+	/**
+	 * Answers a command which failed with an unexpected exception with "error internal",
+	 * after the replies still waiting if the socket takes them, and closes that client's
+	 * connection.  The other clients and their games are not affected: the shared Game is
+	 * set up again from a stored FEN by the next command.
+	 */
+	private static void fail(SelectionKey key, RuntimeException e){
+		Object attachment = key.attachment();
+		if(attachment instanceof Connection){
+			Connection connection = (Connection) attachment;
+			ByteBuffer out = connection.out;
+			if(out.remaining() < MAX_REPLY)
+				out.clear();
+			reply(out, "error internal " + e.getClass().getSimpleName());
+			out.flip();
+			try{
+				connection.channel.write(out);
+			}catch(IOException ignored){
+				// The connection is closed below either way
+			}
+		}
+		disconnect(key);
+	}
+
+	/**
+	 * Closes a client's connection.
+	 */
+	private static void disconnect(SelectionKey key){
+		key.cancel();
+		try{
+			key.channel().close();
+		}catch(IOException e){
+			// The connection is gone either way
+		}
+	}
+
+	/**
+	 * Returns the port the server listens on.
+	 */
+	public int getPort(){
+		return server.socket().getLocalPort();
+	}
+
+	/**
+	 * Returns the number of games which have not been resigned.
+	 */
+	public int getGames(){
+		return liveGames;
+	}
+
+	/**
+	 * Stops the server; run() returns and every connection is closed.
+	 */
+	public void close(){
+		closed = true;
+		selector.wakeup();
+	}
+
+	/**
+	 * Serves games on the port of the first argument, or DEFAULT_PORT.
+	 */
+	public static void main(String[] args) throws IOException{
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+		GameServer server = new GameServer(port);
+		System.out.println("Serving games on " + InetAddress.getLoopbackAddress().getHostAddress() + ":" + server.getPort());
+		server.run();
+	}
+
+}  // End GameServer
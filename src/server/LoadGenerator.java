@@ -0,0 +1,230 @@
+package server;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+import rules.Fen;
+import rules.Move;
+import rules.MoveGenerator;
+import rules.Position;
+
+/**
+ * The LoadGenerator class plays random games against a GameServer and measures how many moves
+ * per second it plays and how long each move takes to be answered.  Each connection is a
+ * thread which first starts its share of the games, so they are all alive on the server at
+ * once, then takes them in turn: it asks for the position, picks a random legal move and
+ * times the "move" command.  A finished game is resigned and replaced by a new one.
+ *
+ * Without a port a server is started in this JVM, and the heap it keeps per game is printed
+ * too.  The heap is first measured once every client is connected and has allocated its own
+ * buffers, and again once the games are started, so the figure is only what the server keeps
+ * for the games.
+ *
+ * java server.LoadGenerator [connections] [games per connection] [seconds] [port]
+ */
+public class LoadGenerator {
+
+	/**
+	 * A game longer than this many moves is resigned, so the positions stay varied.
+	 */
+	private static final int MAX_MOVES_PER_GAME = 150;
+
+	/**
+	 * One connection and the games it plays.
+	 */
+	private static final class Client implements Runnable {
+		private final int port, games;
+		private final long seconds;
+		private final CountDownLatch connected, measured, started;
+		private final Random random;
+
+		/**
+		 * The latency in nanoseconds of every move played, and the number of refused moves.
+		 */
+		long[] latencies = new long[1 << 16];
+		int moves, errors;
+		IOException failure;
+
+		private BufferedReader in;
+		private BufferedWriter out;
+		private boolean connectedCounted, counted;
+
+		Client(int port, int games, long seconds, CountDownLatch connected, CountDownLatch measured,
+				CountDownLatch started, long seed){
+			this.port = port;
+			this.games = games;
+			this.seconds = seconds;
+			this.connected = connected;
+			this.measured = measured;
+			this.started = started;
+			random = new Random(seed);
+		}
+
+		public void run(){
+			try(Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)){
+				socket.setTcpNoDelay(true);
+				in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.ISO_8859_1));
+				out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.ISO_8859_1));
+				int[] ids = new int[games];
+				Position position = new Position();
+				int[] buffer = new int[MoveGenerator.MAX_MOVES];
+				connectedCounted = true;
+				connected.countDown();
+				measured.await();
+
+				for(int i=0; i<games; i++)
+					ids[i] = newGame();
+				counted = true;
+				started.countDown();
+				started.await();
+
+				long deadline = System.nanoTime() + seconds * 1000000000L;
+				for(int i=0; System.nanoTime() < deadline; i = (i + 1) % games){
+					String reply = request("position " + ids[i]);
+					Fen.parse(reply.substring(3), position);
+					int count = MoveGenerator.generate(position, buffer, 0);
+					if(count == 0 || position.getFullmoveNumber() > MAX_MOVES_PER_GAME){
+						request("resign " + ids[i]);
+						ids[i] = newGame();
+						continue;
+					}
+
+					String move = Move.toString(buffer[random.nextInt(count)]);
+					long start = System.nanoTime();
+					reply = request("move " + ids[i] + " " + move);
+					long latency = System.nanoTime() - start;
+					if(!reply.startsWith("ok")){
+						errors++;
+						continue;
+					}
+					if(moves == latencies.length)
+						latencies = Arrays.copyOf(latencies, moves * 2);
+					latencies[moves++] = latency;
+				}
+			}catch(IOException e){
+				failure = e;
+			}catch(InterruptedException e){
+				Thread.currentThread().interrupt();
+			}finally{
+				if(!connectedCounted)
+					connected.countDown();
+				if(!counted)
+					started.countDown();
+			}
+		}
+
+		/**
+		 * Starts a game and returns its id.
+		 */
+		private int newGame() throws IOException{
+			String reply = request("new");
+			if(!reply.startsWith("ok "))
+				throw new IOException("Server refused a new game: " + reply);
+			return Integer.parseInt(reply.substring(3));
+		}
+
+		/**
+		 * Sends a command and returns the reply.
+		 */
+		private String request(String command) throws IOException{
+			out.write(command);
+			out.write('\n');
+			out.flush();
+			String reply = in.readLine();
+			if(reply == null)
+				throw new IOException("Server closed the connection");
+			return reply;
+		}
+	}
+
+	/**
+	 * Runs the clients and prints the moves per second and the latency percentiles.
+	 */
+	public static void main(String[] args) throws Exception{
+		int connections = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+		int games = args.length > 1 ? Integer.parseInt(args[1]) : 2500;
+		long seconds = args.length > 2 ? Long.parseLong(args[2]) : 10;
+
+		GameServer server = null;
+		int port;
+		if(args.length > 3)
+			port = Integer.parseInt(args[3]);
+		else{
+			server = new GameServer(0);
+			port = server.getPort();
+			new Thread(server, "game-server").start();
+		}
+
+		// Each client counts down once connected and once its games are started, or when it
+		// fails before that; it starts its games once the heap has been measured
+		CountDownLatch connected = new CountDownLatch(connections), measured = new CountDownLatch(1);
+		CountDownLatch started = new CountDownLatch(connections);
+		Client[] clients = new Client[connections];
+		Thread[] threads = new Thread[connections];
+		for(int i=0; i<connections; i++){
+			clients[i] = new Client(port, games, seconds, connected, measured, started, i);
+			threads[i] = new Thread(clients[i], "load-client-" + i);
+			threads[i].start();
+		}
+		connected.await();
+		long heapBefore = server != null ? usedHeap() : 0;
+		measured.countDown();
+		started.await();
+		if(server != null)
+			System.out.printf("Games alive: %d  Server heap per game: %d bytes%n", server.getGames(),
+					(usedHeap() - heapBefore) / Math.max(1, server.getGames()));
+		for(Thread thread: threads)
+			thread.join();
+		if(server != null)
+			server.close();
+
+		int moves = 0, errors = 0;
+		for(Client client: clients){
+			if(client.failure != null)
+				throw client.failure;
+			moves += client.moves;
+			errors += client.errors;
+		}
+		long[] all = new long[moves];
+		int n = 0;
+		for(Client client: clients){
+			System.arraycopy(client.latencies, 0, all, n, client.moves);
+			n += client.moves;
+		}
+		Arrays.sort(all);
+
+		System.out.printf("Connections: %d  Games: %d  Moves: %d  Refused: %d%n", connections,
+				connections * games, moves, errors);
+		System.out.printf("Moves/s: %.0f%n", moves / (double) seconds);
+		if(moves > 0)
+			System.out.printf("Latency us: p50 %.1f  p99 %.1f  max %.1f%n", percentile(all, 0.50) / 1e3,
+					percentile(all, 0.99) / 1e3, all[moves - 1] / 1e3);
+	}
+
+	/**
+	 * Returns the value below which the given fraction of the sorted values fall.
+	 */
+	private static long percentile(long[] sorted, double fraction){
+		return sorted[Math.min(sorted.length - 1, (int) (sorted.length * fraction))];
+	}
+
+	/**
+	 * Returns the bytes of heap in use after a garbage collection.
+	 */
+	private static long usedHeap(){
+		Runtime runtime = Runtime.getRuntime();
+		for(int i=0; i<3; i++)
+			System.gc();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+}  // End LoadGenerator